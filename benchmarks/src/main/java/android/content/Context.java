@@ -0,0 +1,18 @@
+package android.content;
+
+import android.content.res.Resources;
+
+/**
+ * Benchmark stand-in for the parts of Android's {@code Context} used by EncryptedPreferences.
+ */
+public abstract class Context {
+
+	public abstract Context getApplicationContext();
+
+	public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+	public abstract Resources getResources();
+
+	public abstract String getPackageName();
+
+}
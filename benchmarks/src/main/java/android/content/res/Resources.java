@@ -0,0 +1,12 @@
+package android.content.res;
+
+/**
+ * Benchmark stand-in for Android's {@code Resources}. Every boolean resource is false, which keeps debug logging disabled.
+ */
+public class Resources {
+
+	public boolean getBoolean(int id) {
+		return false;
+	}
+
+}
@@ -0,0 +1,18 @@
+package android.preference;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Benchmark stand-in for Android's {@code PreferenceManager}.
+ */
+public final class PreferenceManager {
+
+	private PreferenceManager() {
+	}
+
+	public static SharedPreferences getDefaultSharedPreferences(Context context) {
+		return context.getSharedPreferences(context.getPackageName() + "_preferences", 0);
+	}
+
+}
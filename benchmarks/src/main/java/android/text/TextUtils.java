@@ -0,0 +1,15 @@
+package android.text;
+
+/**
+ * Benchmark stand-in for Android's {@code TextUtils}.
+ */
+public final class TextUtils {
+
+	private TextUtils() {
+	}
+
+	public static boolean isEmpty(CharSequence str) {
+		return str == null || str.length() == 0;
+	}
+
+}
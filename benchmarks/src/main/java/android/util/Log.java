@@ -0,0 +1,16 @@
+package android.util;
+
+/**
+ * Benchmark stand-in for Android's {@code Log}, which writes to {@link System#out}.
+ */
+public final class Log {
+
+	private Log() {
+	}
+
+	public static int d(String tag, String msg) {
+		System.out.println(tag + ": " + msg);
+		return 0;
+	}
+
+}
@@ -0,0 +1,13 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Benchmark stand-in for the resource ids Android generates for the library module.
+ */
+public final class R {
+
+	public static final class bool {
+
+		public static final int enable_debug_messages = 0x7f010000;
+	}
+
+}
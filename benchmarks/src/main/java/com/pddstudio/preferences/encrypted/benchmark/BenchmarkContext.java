@@ -0,0 +1,43 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Context} stand-in which hands out {@link InMemorySharedPreferences}. Every instance has its own, initially empty, preferences.
+ */
+final class BenchmarkContext extends Context {
+
+	private final Map<String, SharedPreferences> preferences = new HashMap<>();
+	private final Resources                      resources   = new Resources();
+
+	@Override
+	public Context getApplicationContext() {
+		return this;
+	}
+
+	@Override
+	public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+		SharedPreferences sharedPreferences = preferences.get(name);
+		if (sharedPreferences == null) {
+			sharedPreferences = new InMemorySharedPreferences();
+			preferences.put(name, sharedPreferences);
+		}
+		return sharedPreferences;
+	}
+
+	@Override
+	public Resources getResources() {
+		return resources;
+	}
+
+	@Override
+	public String getPackageName() {
+		return "com.pddstudio.preferences.encrypted.benchmark";
+	}
+
+}
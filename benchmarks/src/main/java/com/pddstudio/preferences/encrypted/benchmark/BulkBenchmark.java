@@ -0,0 +1,82 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import android.content.SharedPreferences;
+
+import com.pddstudio.preferences.encrypted.EncryptedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the operations which decrypt or encrypt every stored entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int size;
+
+	private EncryptedPreferences encryptedPreferences;
+
+	@Setup
+	public void setup() {
+		encryptedPreferences = Fixtures.builder().build();
+		Fixtures.fill(encryptedPreferences, size);
+	}
+
+	@Benchmark
+	public Set<String> getAllKeys() {
+		return encryptedPreferences.getAllKeys(true);
+	}
+
+	@Benchmark
+	public Map<String, ?> getAll() {
+		return encryptedPreferences.getAll();
+	}
+
+	@Benchmark
+	public EncryptedPreferences.ImportResult importSharedPreferences(ImportState importState) {
+		return importState.target.importSharedPreferences(importState.source, true, true);
+	}
+
+	/**
+	 * Fresh unencrypted source and empty target preferences for every import, as an import removes the imported entries from its source.
+	 */
+	@State(Scope.Thread)
+	public static class ImportState {
+
+		EncryptedPreferences target;
+		SharedPreferences    source;
+
+		@Setup(Level.Invocation)
+		public void setup(BulkBenchmark benchmark) {
+			target = Fixtures.builder().build();
+			source = new InMemorySharedPreferences();
+			SharedPreferences.Editor editor = source.edit();
+			for (int i = 0; i < benchmark.size; i++) {
+				editor.putString("key_" + i, "value of entry " + i);
+			}
+			editor.commit();
+		}
+	}
+
+}
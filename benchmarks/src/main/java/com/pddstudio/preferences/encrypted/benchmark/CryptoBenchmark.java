@@ -0,0 +1,63 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import com.pddstudio.preferences.encrypted.EncryptedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the raw encryption and decryption of a single string, without any preference lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+
+	private EncryptedPreferences.Utils utils;
+	private String                     plainText;
+	private String                     cipherText;
+
+	@Setup
+	public void setup() {
+		utils = Fixtures.builder().build().getUtils();
+		plainText = "a typical preference value of about 48 characters";
+		cipherText = utils.encryptStringValue(plainText);
+	}
+
+	@Benchmark
+	public String encryptString() {
+		return utils.encryptStringValue(plainText);
+	}
+
+	@Benchmark
+	public String decryptString() {
+		return utils.decryptStringValue(cipherText);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String encryptStringContended() {
+		return utils.encryptStringValue(plainText);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String decryptStringContended() {
+		return utils.decryptStringValue(cipherText);
+	}
+
+}
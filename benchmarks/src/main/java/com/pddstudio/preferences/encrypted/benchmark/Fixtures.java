@@ -0,0 +1,69 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import com.pddstudio.preferences.encrypted.EncryptedPreferences;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Creates and fills the {@link EncryptedPreferences} instances the benchmarks run against.
+ */
+final class Fixtures {
+
+	static final int TYPE_STRING  = 0;
+	static final int TYPE_INT     = 1;
+	static final int TYPE_LONG    = 2;
+	static final int TYPE_FLOAT   = 3;
+	static final int TYPE_BOOLEAN = 4;
+	static final int TYPE_COUNT   = 5;
+
+	private Fixtures() {
+	}
+
+	static EncryptedPreferences.Builder builder() {
+		return new EncryptedPreferences.Builder(new BenchmarkContext()).withEncryptionPassword("benchmark-password");
+	}
+
+	/**
+	 * Writes the given number of entries, the type of every entry is its index modulo {@link #TYPE_COUNT}.
+	 * @param encryptedPreferences - The {@link EncryptedPreferences} to fill
+	 * @param size - The number of entries to write, at least {@link #TYPE_COUNT}
+	 * @return The keys of the written entries, by index
+	 */
+	static String[] fill(EncryptedPreferences encryptedPreferences, int size) {
+		String[] keys = new String[size];
+		EncryptedPreferences.EncryptedEditor editor = encryptedPreferences.edit();
+		for (int i = 0; i < size; i++) {
+			keys[i] = "key_" + i;
+			switch (i % TYPE_COUNT) {
+				case TYPE_STRING:
+					editor.putString(keys[i], "value of entry " + i);
+					break;
+				case TYPE_INT:
+					editor.putInt(keys[i], i);
+					break;
+				case TYPE_LONG:
+					editor.putLong(keys[i], i * 1000000007L);
+					break;
+				case TYPE_FLOAT:
+					editor.putFloat(keys[i], i / 3f);
+					break;
+				default:
+					editor.putBoolean(keys[i], i % 2 == 0);
+					break;
+			}
+		}
+		editor.commit();
+		return keys;
+	}
+
+	/**
+	 * Picks a random key of the given type.
+	 * @param keys - The keys returned by {@link #fill(EncryptedPreferences, int)}
+	 * @param type - The type of the entry
+	 * @return A random key whose entry has the given type
+	 */
+	static String randomKey(String[] keys, int type) {
+		return keys[type + TYPE_COUNT * ThreadLocalRandom.current().nextInt(keys.length / TYPE_COUNT)];
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An in-memory {@link SharedPreferences} stand-in. Changes are visible once committed, listeners are notified on the committing thread.
+ */
+final class InMemorySharedPreferences implements SharedPreferences {
+
+	private final Map<String, Object>                    values    = new HashMap<>();
+	private final List<OnSharedPreferenceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public synchronized Map<String, ?> getAll() {
+		return new HashMap<>(values);
+	}
+
+	@Override
+	public synchronized String getString(String key, String defValue) {
+		return values.containsKey(key) ? (String) values.get(key) : defValue;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+		return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+	}
+
+	@Override
+	public synchronized int getInt(String key, int defValue) {
+		return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+	}
+
+	@Override
+	public synchronized long getLong(String key, long defValue) {
+		return values.containsKey(key) ? (Long) values.get(key) : defValue;
+	}
+
+	@Override
+	public synchronized float getFloat(String key, float defValue) {
+		return values.containsKey(key) ? (Float) values.get(key) : defValue;
+	}
+
+	@Override
+	public synchronized boolean getBoolean(String key, boolean defValue) {
+		return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return values.containsKey(key);
+	}
+
+	@Override
+	public SharedPreferences.Editor edit() {
+		return new Editor();
+	}
+
+	@Override
+	public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	private final class Editor implements SharedPreferences.Editor {
+
+		private final Map<String, Object> modifications = new HashMap<>();
+		private       boolean             clear;
+
+		@Override
+		public synchronized SharedPreferences.Editor putString(String key, String value) {
+			modifications.put(key, value == null ? this : value);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor putStringSet(String key, Set<String> values) {
+			modifications.put(key, values == null ? this : values);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor putInt(String key, int value) {
+			modifications.put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor putLong(String key, long value) {
+			modifications.put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor putFloat(String key, float value) {
+			modifications.put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor putBoolean(String key, boolean value) {
+			modifications.put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor remove(String key) {
+			// the editor itself marks removed keys
+			modifications.put(key, this);
+			return this;
+		}
+
+		@Override
+		public synchronized SharedPreferences.Editor clear() {
+			clear = true;
+			return this;
+		}
+
+		@Override
+		public boolean commit() {
+			List<String> changedKeys;
+			synchronized (this) {
+				synchronized (InMemorySharedPreferences.this) {
+					if (clear) {
+						values.clear();
+						clear = false;
+					}
+					changedKeys = new ArrayList<>(modifications.keySet());
+					for (Map.Entry<String, Object> modification : modifications.entrySet()) {
+						if (modification.getValue() == this) {
+							values.remove(modification.getKey());
+						} else {
+							values.put(modification.getKey(), modification.getValue());
+						}
+					}
+					modifications.clear();
+				}
+			}
+			for (String key : changedKeys) {
+				for (OnSharedPreferenceChangeListener listener : listeners) {
+					listener.onSharedPreferenceChanged(InMemorySharedPreferences.this, key);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void apply() {
+			commit();
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import com.pddstudio.preferences.encrypted.EncryptedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a committed change with a varying number of registered listeners. Listeners are notified before {@code commit()} returns, so the
+ * difference to the run without listeners is the cost of the dispatch, including the decryption of the changed key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int size;
+
+	@Param({ "0", "1", "10" })
+	public int listenerCount;
+
+	private EncryptedPreferences encryptedPreferences;
+	private String[]             keys;
+	private volatile String      lastChangedKey;
+
+	@Setup
+	public void setup() {
+		EncryptedPreferences.Builder builder = Fixtures.builder();
+		for (int i = 0; i < listenerCount; i++) {
+			builder.withOnSharedPreferenceChangeListener(new EncryptedPreferences.OnSharedPreferenceChangeListener() {
+				@Override
+				public void onSharedPreferenceChanged(EncryptedPreferences encryptedPreferences, String key) {
+					lastChangedKey = key;
+				}
+			});
+		}
+		encryptedPreferences = builder.build();
+		keys = Fixtures.fill(encryptedPreferences, size);
+	}
+
+	@Benchmark
+	public boolean commitWithListeners() {
+		return encryptedPreferences.edit().putString(Fixtures.randomKey(keys, Fixtures.TYPE_STRING), "updated value").commit();
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import com.pddstudio.preferences.encrypted.EncryptedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures typed reads of random keys, which encrypt the key and decrypt and parse the value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int size;
+
+	@Param({ "0", "64" })
+	public int valueCacheSize;
+
+	private EncryptedPreferences encryptedPreferences;
+	private String[]             keys;
+
+	@Setup
+	public void setup() {
+		encryptedPreferences = Fixtures.builder().withValueCache(valueCacheSize).build();
+		keys = Fixtures.fill(encryptedPreferences, size);
+	}
+
+	@Benchmark
+	public String getString() {
+		return encryptedPreferences.getString(Fixtures.randomKey(keys, Fixtures.TYPE_STRING), null);
+	}
+
+	@Benchmark
+	public int getInt() {
+		return encryptedPreferences.getInt(Fixtures.randomKey(keys, Fixtures.TYPE_INT), -1);
+	}
+
+	@Benchmark
+	public long getLong() {
+		return encryptedPreferences.getLong(Fixtures.randomKey(keys, Fixtures.TYPE_LONG), -1L);
+	}
+
+	@Benchmark
+	public float getFloat() {
+		return encryptedPreferences.getFloat(Fixtures.randomKey(keys, Fixtures.TYPE_FLOAT), -1f);
+	}
+
+	@Benchmark
+	public boolean getBoolean() {
+		return encryptedPreferences.getBoolean(Fixtures.randomKey(keys, Fixtures.TYPE_BOOLEAN), false);
+	}
+
+	@Benchmark
+	public boolean containsMissing() {
+		return encryptedPreferences.contains("missing_key");
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String getStringContended() {
+		return encryptedPreferences.getString(Fixtures.randomKey(keys, Fixtures.TYPE_STRING), null);
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.pddstudio.preferences.encrypted.benchmark;
+
+import com.pddstudio.preferences.encrypted.EncryptedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code putX()} followed by {@code apply()} for random existing keys, which is the latency seen by the caller. The encryption itself
+ * happens on the writer thread, the {@link #commit()} benchmark includes it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int size;
+
+	private EncryptedPreferences encryptedPreferences;
+	private String[]             keys;
+
+	@Setup
+	public void setup() {
+		encryptedPreferences = Fixtures.builder().build();
+		keys = Fixtures.fill(encryptedPreferences, size);
+	}
+
+	@TearDown(Level.Iteration)
+	public void awaitWriter() {
+		// an empty commit waits for all applied batches, so the backlog of one iteration doesn't slow down the next one
+		encryptedPreferences.edit().commit();
+	}
+
+	@Benchmark
+	public void putString() {
+		encryptedPreferences.edit().putString(Fixtures.randomKey(keys, Fixtures.TYPE_STRING), "updated value").apply();
+	}
+
+	@Benchmark
+	public void putInt() {
+		encryptedPreferences.edit().putInt(Fixtures.randomKey(keys, Fixtures.TYPE_INT), 42).apply();
+	}
+
+	@Benchmark
+	public void putLong() {
+		encryptedPreferences.edit().putLong(Fixtures.randomKey(keys, Fixtures.TYPE_LONG), 42L).apply();
+	}
+
+	@Benchmark
+	public void putFloat() {
+		encryptedPreferences.edit().putFloat(Fixtures.randomKey(keys, Fixtures.TYPE_FLOAT), 4.2f).apply();
+	}
+
+	@Benchmark
+	public void putBoolean() {
+		encryptedPreferences.edit().putBoolean(Fixtures.randomKey(keys, Fixtures.TYPE_BOOLEAN), true).apply();
+	}
+
+	@Benchmark
+	public boolean commit() {
+		return encryptedPreferences.edit().putString(Fixtures.randomKey(keys, Fixtures.TYPE_STRING), "updated value").commit();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void putStringContended() {
+		encryptedPreferences.edit().putString(Fixtures.randomKey(keys, Fixtures.TYPE_STRING), "updated value").apply();
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts and decrypts records of an authenticated {@link CipherSuite}: the suite's version byte, a random 96 bit nonce and the cipher text
+ * including its 128 bit authentication tag. The output size is known upfront, so the cipher writes straight into the record which is returned,
+ * without intermediate buffers. Every thread uses its own {@link Cipher} instances, which are initialized with the nonce of every record.
+ * Encryption and decryption use separate instances, as some providers refuse to initialize an instance twice with the same key and nonce.
+ * <p>
+ * AES-CBC records have no version byte, but their length is always a multiple of the AES block size. A record which would have such a length is
+ * extended by a zero filler byte, which is announced by {@link #FILLER_FLAG} in the version byte, so both kinds of records can never be confused.
+ */
+final class AeadCipher {
+
+	static final int  NONCE_SIZE  = 12;
+	static final int  TAG_SIZE    = 16;
+	static final int  HEADER_SIZE = 1 + NONCE_SIZE;
+	static final byte FILLER_FLAG = (byte) 0x80;
+
+	private static final int AES_BLOCK_SIZE = 16;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final CipherSuite         cipherSuite;
+	private final String              transformation;
+	private final SecretKeySpec       key;
+	private final ThreadLocal<Cipher> encryptCiphers;
+	private final ThreadLocal<Cipher> decryptCiphers;
+
+	/**
+	 * Create a new {@link AeadCipher}.
+	 * @param cipherSuite - The authenticated {@link CipherSuite}
+	 * @param key - The 256 bit key
+	 * @throws NoSuchAlgorithmException if the suite isn't supported on this device
+	 */
+	AeadCipher(CipherSuite cipherSuite, byte[] key) throws NoSuchAlgorithmException {
+		this.cipherSuite = cipherSuite;
+		this.transformation = cipherSuite.transformation();
+		if (transformation == null) {
+			throw new NoSuchAlgorithmException("Cipher suite " + cipherSuite + " is not supported");
+		}
+		this.key = new SecretKeySpec(key, cipherSuite == CipherSuite.AES_GCM ? "AES" : "ChaCha20");
+		this.encryptCiphers = new ThreadLocal<>();
+		this.decryptCiphers = new ThreadLocal<>();
+	}
+
+	/**
+	 * Creates the {@link Cipher} instances of the calling thread.
+	 * @throws GeneralSecurityException if the {@link Cipher} instances couldn't be created
+	 */
+	void warmUp() throws GeneralSecurityException {
+		cipher(encryptCiphers);
+		cipher(decryptCiphers);
+	}
+
+	private Cipher cipher(ThreadLocal<Cipher> ciphers) throws GeneralSecurityException {
+		Cipher cipher = ciphers.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance(transformation);
+			ciphers.set(cipher);
+		}
+		return cipher;
+	}
+
+	private AlgorithmParameterSpec params(byte[] nonce, int offset) {
+		if (cipherSuite == CipherSuite.AES_GCM) {
+			return new GCMParameterSpec(TAG_SIZE * 8, nonce, offset, NONCE_SIZE);
+		}
+		return new IvParameterSpec(nonce, offset, NONCE_SIZE);
+	}
+
+	/**
+	 * Checks whether the given record was written by an authenticated suite, which is told by its length alone.
+	 * @param length - The length of the record
+	 * @return Returns true if the record was written by {@link #encrypt(byte[])}, false if it's an AES-CBC record.
+	 */
+	static boolean isAuthenticated(int length) {
+		return length % AES_BLOCK_SIZE != 0;
+	}
+
+	/**
+	 * Retrieve the authenticated {@link CipherSuite} which wrote the given record.
+	 * @param record - The buffer holding a record for which {@link #isAuthenticated(int)} is true
+	 * @return The {@link CipherSuite} of the record
+	 * @throws GeneralSecurityException if the record doesn't start with the version byte of an authenticated suite
+	 */
+	static CipherSuite suiteOf(byte[] record) throws GeneralSecurityException {
+		CipherSuite suite = CipherSuite.forVersion((byte) (record[0] & ~FILLER_FLAG));
+		if (suite == null || suite == CipherSuite.AES_CBC) {
+			throw new GeneralSecurityException("Unknown cipher suite version " + record[0]);
+		}
+		return suite;
+	}
+
+	/**
+	 * Encrypts the given payload with a random nonce.
+	 * @param payload - The bytes to encrypt
+	 * @return The record, consisting of the version byte, the nonce, the cipher text and an optional filler byte
+	 * @throws GeneralSecurityException if the payload couldn't be encrypted
+	 */
+	byte[] encrypt(byte[] payload) throws GeneralSecurityException {
+		int recordLength = HEADER_SIZE + payload.length + TAG_SIZE;
+		boolean filler = !isAuthenticated(recordLength);
+		byte[] record = new byte[filler ? recordLength + 1 : recordLength];
+		byte[] nonce = new byte[NONCE_SIZE];
+		RANDOM.nextBytes(nonce);
+		record[0] = filler ? (byte) (cipherSuite.version | FILLER_FLAG) : cipherSuite.version;
+		System.arraycopy(nonce, 0, record, 1, NONCE_SIZE);
+		Cipher cipher = cipher(encryptCiphers);
+		try {
+			cipher.init(Cipher.ENCRYPT_MODE, key, params(nonce, 0));
+			int length = cipher.doFinal(payload, 0, payload.length, record, HEADER_SIZE);
+			if (length != payload.length + TAG_SIZE) {
+				throw new GeneralSecurityException("Unexpected cipher text length " + length);
+			}
+			return record;
+		} catch (GeneralSecurityException e) {
+			encryptCiphers.remove();
+			throw e;
+		}
+	}
+
+	/**
+	 * Decrypts and authenticates the given record.
+	 * @param record - The record written by {@link #encrypt(byte[])}
+	 * @return The decrypted payload
+	 * @throws GeneralSecurityException if the record is malformed, was modified or couldn't be decrypted
+	 */
+	byte[] decrypt(byte[] record) throws GeneralSecurityException {
+		byte[] payload = new byte[Math.max(record.length - HEADER_SIZE - TAG_SIZE, 0)];
+		int length = decrypt(record, record.length, payload);
+		return length == payload.length ? payload : Arrays.copyOf(payload, length);
+	}
+
+	/**
+	 * Decrypts and authenticates the given record into the given buffer.
+	 * @param record - The buffer holding the record written by {@link #encrypt(byte[])}
+	 * @param length - The length of the record
+	 * @param output - The buffer to write the decrypted payload to, at least as long as the record
+	 * @return The length of the decrypted payload
+	 * @throws GeneralSecurityException if the record is malformed, was modified or couldn't be decrypted
+	 */
+	int decrypt(byte[] record, int length, byte[] output) throws GeneralSecurityException {
+		boolean filler = length > 0 && record[0] == (byte) (cipherSuite.version | FILLER_FLAG);
+		if (filler) {
+			length--;
+		}
+		// the filler byte is not authenticated, so it's only accepted exactly where it's written
+		if (length < HEADER_SIZE + TAG_SIZE || (!filler && record[0] != cipherSuite.version) || filler == isAuthenticated(length)
+				|| (filler && record[length] != 0)) {
+			throw new GeneralSecurityException("Malformed " + cipherSuite + " record");
+		}
+		Cipher cipher = cipher(decryptCiphers);
+		try {
+			try {
+				cipher.init(Cipher.DECRYPT_MODE, key, params(record, 1));
+			} catch (InvalidKeyException e) {
+				// the JDK's ChaCha20 even refuses to decrypt the same record twice in a row, a new instance doesn't know the previous nonce
+				decryptCiphers.remove();
+				cipher = cipher(decryptCiphers);
+				cipher.init(Cipher.DECRYPT_MODE, key, params(record, 1));
+			}
+			return cipher.doFinal(record, HEADER_SIZE, length - HEADER_SIZE, output, 0);
+		} catch (GeneralSecurityException e) {
+			decryptCiphers.remove();
+			throw e;
+		}
+	}
+
+}
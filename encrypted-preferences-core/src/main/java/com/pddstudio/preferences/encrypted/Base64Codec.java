@@ -0,0 +1,121 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Plain Java Base64 codec for the two alphabets written by {@link EncryptedStore}: the standard alphabet with padding and the URL-safe
+ * alphabet without padding, both without line wraps. Unlike {@code android.util.Base64} this also works outside of Android, e.g. in unit tests.
+ */
+final class Base64Codec {
+
+	private static final char[] STANDARD_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	private static final char[] URL_SAFE_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	private static final int[]  STANDARD_VALUES   = values(STANDARD_ALPHABET);
+	private static final int[]  URL_SAFE_VALUES   = values(URL_SAFE_ALPHABET);
+
+	private Base64Codec() {
+	}
+
+	private static int[] values(char[] alphabet) {
+		int[] values = new int[128];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = -1;
+		}
+		for (int i = 0; i < alphabet.length; i++) {
+			values[alphabet[i]] = i;
+		}
+		return values;
+	}
+
+	/**
+	 * Encodes the given bytes.
+	 * @param data - The bytes to encode
+	 * @param urlSafe - Whether to use the URL-safe alphabet without padding or the standard alphabet with padding
+	 * @return The Base64 encoded bytes
+	 */
+	static String encode(byte[] data, boolean urlSafe) {
+		char[] alphabet = urlSafe ? URL_SAFE_ALPHABET : STANDARD_ALPHABET;
+		int remainder = data.length % 3;
+		int length = data.length / 3 * 4 + (remainder == 0 ? 0 : urlSafe ? remainder + 1 : 4);
+		char[] encoded = new char[length];
+		int position = 0;
+		int i = 0;
+		for (; i + 2 < data.length; i += 3) {
+			int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+			encoded[position++] = alphabet[bits >>> 18];
+			encoded[position++] = alphabet[(bits >>> 12) & 0x3F];
+			encoded[position++] = alphabet[(bits >>> 6) & 0x3F];
+			encoded[position++] = alphabet[bits & 0x3F];
+		}
+		if (remainder > 0) {
+			int bits = (data[i] & 0xFF) << 16 | (remainder == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+			encoded[position++] = alphabet[bits >>> 18];
+			encoded[position++] = alphabet[(bits >>> 12) & 0x3F];
+			if (remainder == 2) {
+				encoded[position++] = alphabet[(bits >>> 6) & 0x3F];
+			}
+			if (!urlSafe) {
+				while (position < length) {
+					encoded[position++] = '=';
+				}
+			}
+		}
+		return new String(encoded);
+	}
+
+	/**
+	 * Decodes the given Base64 string. Padding is optional for both alphabets.
+	 * @param value - The Base64 string to decode
+	 * @param urlSafe - Whether the string uses the URL-safe or the standard alphabet
+	 * @return The decoded bytes, or null if the string isn't valid Base64
+	 */
+	static byte[] decode(String value, boolean urlSafe) {
+		char[] chars = value.toCharArray();
+		byte[] decoded = new byte[decodedLength(chars, chars.length)];
+		return decode(chars, chars.length, urlSafe, decoded) < 0 ? null : decoded;
+	}
+
+	/**
+	 * Decodes the given Base64 characters into the given buffer, without allocating. Padding is optional for both alphabets.
+	 * @param chars - The Base64 characters to decode
+	 * @param length - The number of characters to decode
+	 * @param urlSafe - Whether the characters use the URL-safe or the standard alphabet
+	 * @param output - The buffer to write the decoded bytes to, at least {@code length * 3 / 4} bytes long
+	 * @return The number of decoded bytes, or -1 if the characters aren't valid Base64
+	 */
+	static int decode(char[] chars, int length, boolean urlSafe, byte[] output) {
+		int[] values = urlSafe ? URL_SAFE_VALUES : STANDARD_VALUES;
+		int dataLength = length;
+		while (dataLength > 0 && chars[dataLength - 1] == '=') {
+			dataLength--;
+		}
+		if (dataLength % 4 == 1 || length - dataLength > 2) {
+			return -1;
+		}
+		int position = 0;
+		int bits = 0;
+		int bitCount = 0;
+		for (int i = 0; i < dataLength; i++) {
+			char c = chars[i];
+			int digit = c < 128 ? values[c] : -1;
+			if (digit < 0) {
+				return -1;
+			}
+			bits = bits << 6 | digit;
+			bitCount += 6;
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				output[position++] = (byte) (bits >>> bitCount);
+				bits &= (1 << bitCount) - 1;
+			}
+		}
+		return position;
+	}
+
+	private static int decodedLength(char[] chars, int length) {
+		int dataLength = length;
+		while (dataLength > 0 && chars[dataLength - 1] == '=') {
+			dataLength--;
+		}
+		return dataLength * 3 / 4;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits bulk operations on large preferences into chunks and processes them in parallel.
+ * Every worker thread encrypts and decrypts with its own {@linkplain javax.crypto.Cipher} instances (see {@link CipherPool}), so chunks don't
+ * contend on shared crypto state.
+ */
+final class BulkProcessor {
+
+	/**
+	 * Number of entries processed by a single task.
+	 */
+	static final int CHUNK_SIZE = 128;
+
+	/**
+	 * Minimum number of entries before a bulk operation is split up at all.
+	 */
+	static final int PARALLEL_THRESHOLD = 4 * CHUNK_SIZE;
+
+	private static final int KEEP_ALIVE_SECONDS = 30;
+
+	private static ExecutorService defaultExecutor;
+
+	/**
+	 * Processes a single chunk of a bulk operation.
+	 */
+	interface ChunkTask<I, O> {
+
+		O process(List<I> chunk) throws Exception;
+	}
+
+	private BulkProcessor() {
+	}
+
+	/**
+	 * Retrieve the shared, bounded executor used for bulk operations. Its threads are daemon threads which are released when they're idle.
+	 * @return The shared {@linkplain ExecutorService}
+	 */
+	static synchronized ExecutorService defaultExecutor() {
+		if (defaultExecutor == null) {
+			int threadCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+																 new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("EncryptedPreferences-bulk"));
+			executor.allowCoreThreadTimeOut(true);
+			defaultExecutor = executor;
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Runs the given task for every chunk of the given items. The first chunk is processed on the calling thread, all others are handed to the
+	 * given {@linkplain Executor}. While waiting, the calling thread processes chunks which weren't picked up by the executor yet, so this never
+	 * deadlocks, even when called from one of the executor's own threads. Small inputs or a null executor are processed on the calling thread only.
+	 * @param items - The items to process
+	 * @param executor - The {@linkplain Executor} to run chunks on, might be null
+	 * @param task - The {@link ChunkTask} to run for every chunk
+	 * @return The results of all chunks, in order
+	 */
+	static <I, O> List<O> process(List<I> items, Executor executor, final ChunkTask<I, O> task) {
+		try {
+			if (executor == null || items.size() < PARALLEL_THRESHOLD) {
+				return Collections.singletonList(task.process(items));
+			}
+			List<FutureTask<O>> futures = new ArrayList<>();
+			for (int start = CHUNK_SIZE; start < items.size(); start += CHUNK_SIZE) {
+				final List<I> chunk = items.subList(start, Math.min(start + CHUNK_SIZE, items.size()));
+				FutureTask<O> future = new FutureTask<>(new Callable<O>() {
+					@Override
+					public O call() throws Exception {
+						return task.process(chunk);
+					}
+				});
+				executor.execute(future);
+				futures.add(future);
+			}
+			List<O> results = new ArrayList<>(futures.size() + 1);
+			results.add(task.process(items.subList(0, CHUNK_SIZE)));
+			for (FutureTask<O> future : futures) {
+				// no-op if the executor already started this chunk
+				future.run();
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while processing preferences", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to process preferences", e.getCause());
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException("Unable to process preferences", e);
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Escapes the characters of a Base64 string which aren't plain alphanumerics ({@code +}, {@code /} and {@code =}) with the tokens
+ * {@code x0P1Xx}, {@code x0P2Xx} and {@code x0P3Xx} and reverts this escaping again.
+ * Both directions run in a single pass over a char array instead of one regular expression per token.
+ */
+final class CharsetEncoding {
+
+	private static final int TOKEN_LENGTH = 6;
+
+	private CharsetEncoding() {
+	}
+
+	/**
+	 * Escapes all {@code +}, {@code /} and {@code =} characters of the given Base64 string.
+	 * @param value - The Base64 string to escape
+	 * @return The escaped string, or the given instance if nothing had to be escaped
+	 */
+	static String encode(String value) {
+		int length = value.length();
+		int escapeCount = 0;
+		for (int i = 0; i < length; i++) {
+			if (tokenDigit(value.charAt(i)) != 0) {
+				escapeCount++;
+			}
+		}
+		if (escapeCount == 0) {
+			return value;
+		}
+		char[] encoded = new char[length + escapeCount * (TOKEN_LENGTH - 1)];
+		int position = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			char digit = tokenDigit(c);
+			if (digit == 0) {
+				encoded[position++] = c;
+			} else {
+				encoded[position++] = 'x';
+				encoded[position++] = '0';
+				encoded[position++] = 'P';
+				encoded[position++] = digit;
+				encoded[position++] = 'X';
+				encoded[position++] = 'x';
+			}
+		}
+		return new String(encoded);
+	}
+
+	/**
+	 * Reverts the escaping applied by {@link #encode(String)}.
+	 * @param value - The escaped string
+	 * @return The original Base64 string, or the given instance if it didn't contain any escape tokens
+	 */
+	static String decode(String value) {
+		if (value.indexOf("x0P") < 0) {
+			return value;
+		}
+		char[] decoded = new char[value.length()];
+		return new String(decoded, 0, decode(value, decoded));
+	}
+
+	/**
+	 * Reverts the escaping applied by {@link #encode(String)} into the given buffer, without allocating.
+	 * @param value - The escaped string
+	 * @param output - The buffer to write the original Base64 characters to, at least as long as the escaped string
+	 * @return The number of characters written
+	 */
+	static int decode(String value, char[] output) {
+		int length = value.length();
+		int start = value.indexOf("x0P");
+		if (start < 0) {
+			value.getChars(0, length, output, 0);
+			return length;
+		}
+		value.getChars(0, start, output, 0);
+		int position = start;
+		int i = start;
+		while (i < length) {
+			char c = value.charAt(i);
+			char original = c == 'x' ? tokenAt(value, i) : 0;
+			if (original == 0) {
+				output[position++] = c;
+				i++;
+			} else {
+				output[position++] = original;
+				i += TOKEN_LENGTH;
+			}
+		}
+		return position;
+	}
+
+	private static char tokenDigit(char c) {
+		switch (c) {
+			case '+':
+				return '1';
+			case '/':
+				return '2';
+			case '=':
+				return '3';
+			default:
+				return 0;
+		}
+	}
+
+	private static char tokenAt(String value, int index) {
+		if (index + TOKEN_LENGTH > value.length()
+				|| value.charAt(index + 1) != '0'
+				|| value.charAt(index + 2) != 'P'
+				|| value.charAt(index + 4) != 'X'
+				|| value.charAt(index + 5) != 'x') {
+			return 0;
+		}
+		switch (value.charAt(index + 3)) {
+			case '1':
+				return '+';
+			case '2':
+				return '/';
+			case '3':
+				return '=';
+			default:
+				return 0;
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.Cipher;
+
+/**
+ * Keeps one initialized {@link Cipher} per thread for a fixed transformation, mode, key and parameter set.
+ * A {@link Cipher} resets itself to its initialized state after each {@code doFinal()} call, so a borrowed instance can be reused on the same thread
+ * without calling {@code Cipher.getInstance()} or {@code init()} again.
+ */
+final class CipherPool {
+
+	private final String                 transformation;
+	private final int                    mode;
+	private final Key                    key;
+	private final AlgorithmParameterSpec params;
+	private final ThreadLocal<Cipher>    ciphers;
+
+	CipherPool(String transformation, int mode, Key key, AlgorithmParameterSpec params) {
+		this.transformation = transformation;
+		this.mode = mode;
+		this.key = key;
+		this.params = params;
+		this.ciphers = new ThreadLocal<>();
+	}
+
+	/**
+	 * Retrieve the {@link Cipher} bound to the calling thread, creating and initializing it on first use.
+	 * @return An initialized {@link Cipher} which must not be shared with other threads.
+	 * @throws GeneralSecurityException if the {@link Cipher} couldn't be created
+	 */
+	Cipher borrow() throws GeneralSecurityException {
+		Cipher cipher = ciphers.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance(transformation);
+			cipher.init(mode, key, params);
+			ciphers.set(cipher);
+		}
+		return cipher;
+	}
+
+	/**
+	 * Drops the {@link Cipher} bound to the calling thread, e.g. after it failed and might be left in an undefined state.
+	 */
+	void discard() {
+		ciphers.remove();
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+/**
+ * The cipher suites {@link EncryptedStore} can encrypt values with, see {@link EncryptedStore.Builder#withCipherSuite(CipherSuite)}.
+ * Values written with any suite can be read back regardless of the configured one, as long as the device supports it. Every record of an
+ * authenticated suite starts with the suite's version byte and is never a multiple of the AES block size long, so it can't be confused with an
+ * {@link #AES_CBC} record. Records which fail authentication are rejected.
+ * Keys are always encrypted with {@link #AES_CBC}, as a key has to be encrypted to the same cipher text every time to be found again.
+ */
+public enum CipherSuite {
+
+	/**
+	 * AES-256 in CBC mode with PKCS#7 padding and a zero IV, as written by AESCrypt and all previous versions of this library (default).
+	 * Records of this suite don't have a version byte, so they can still be read by previous versions. They are told apart by their length.
+	 */
+	AES_CBC((byte) 0x01, "AES/CBC/PKCS5Padding"),
+
+	/**
+	 * AES-256 in GCM mode with a random 96 bit nonce and a 128 bit authentication tag. Fastest on devices with AES instructions,
+	 * requires Android 4.4 or newer.
+	 */
+	AES_GCM((byte) 0x02, "AES/GCM/NoPadding"),
+
+	/**
+	 * ChaCha20-Poly1305 with a random 96 bit nonce and a 128 bit authentication tag. Faster than AES on devices without AES instructions,
+	 * requires Android 9 or newer.
+	 */
+	CHACHA20_POLY1305((byte) 0x03, "ChaCha20/Poly1305/NoPadding", "ChaCha20-Poly1305");
+
+	// values() returns a new copy on every call, which would be the only allocation left when reading a primitive value
+	private static final CipherSuite[] SUITES = values();
+
+	final byte     version;
+	// the same transformation is named differently by Android's and the JDK's providers
+	final String[] transformations;
+
+	CipherSuite(byte version, String... transformations) {
+		this.version = version;
+		this.transformations = transformations;
+	}
+
+	/**
+	 * Checks whether this cipher suite is supported by the security providers of the current device.
+	 * @return Returns true if values can be encrypted with this suite, otherwise false.
+	 */
+	public boolean isSupported() {
+		return transformation() != null;
+	}
+
+	/**
+	 * Retrieve the first transformation name of this suite which is supported by a security provider.
+	 * @return The transformation name, or null if this suite isn't supported
+	 */
+	String transformation() {
+		for (String transformation : transformations) {
+			try {
+				Cipher.getInstance(transformation);
+				return transformation;
+			} catch (GeneralSecurityException e) {
+				// try the next name
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieve the cipher suite of the given version byte.
+	 * @param version - The version byte of a record
+	 * @return The {@link CipherSuite} with this version, or null if there's none
+	 */
+	static CipherSuite forVersion(byte version) {
+		for (CipherSuite cipherSuite : SUITES) {
+			if (cipherSuite.version == version) {
+				return cipherSuite;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,255 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Performs the AES encryption and decryption for an {@link EncryptedStore} instance.
+ * The key material is derived only once from the configured password and reused for every read and write operation,
+ * the {@link Cipher} instances are kept per thread by a {@link CipherPool}.
+ * The produced output is byte-compatible with the format written by AESCrypt (SHA-256 hashed password, AES/CBC with PKCS#7 padding and a zero IV,
+ * Base64 encoded without line wraps). Optionally the URL-safe Base64 alphabet without padding can be used instead.
+ * <p>
+ * Values can be encrypted with an authenticated {@link CipherSuite} instead, which uses its own key derived from the AES key. Keys are always
+ * encrypted with AES-CBC, as they have to be encrypted to the same cipher text every time.
+ * <p>
+ * AES-CBC records have no version byte, so their first byte can't tell them apart from authenticated records. Their length does: AES-CBC records
+ * are always a multiple of the block size, while {@link AeadCipher} makes sure an authenticated record never is. A record is therefore never
+ * decrypted with another suite after it failed, so neither existing AES-CBC values nor modified authenticated values are mistaken for each other.
+ */
+final class CryptoEngine {
+
+	// PKCS5Padding is identical to PKCS7Padding for AES' 16 byte blocks and is available on every JCE provider
+	private static final String  AES_MODE       = "AES/CBC/PKCS5Padding";
+	// the padding is removed by hand when decrypting, as the padded transformation copies the plain text to remove it
+	private static final String  AES_DECRYPT    = "AES/CBC/NoPadding";
+	private static final String  HASH_ALGORITHM = "SHA-256";
+	private static final String  MAC_ALGORITHM  = "HmacSHA256";
+	private static final Charset CHARSET        = Charset.forName("UTF-8");
+	private static final byte[]  KEY_HASH_LABEL = "EncryptedPreferences key hash".getBytes(CHARSET);
+	private static final String  VALUE_KEY_INFO = "EncryptedPreferences value key ";
+	private static final int     AES_BLOCK_SIZE = 16;
+	// 128 bits, which are encoded to 22 characters
+	private static final int     KEY_HASH_SIZE  = 16;
+
+	private final CipherPool                       encryptCiphers;
+	private final CipherPool                       decryptCiphers;
+	private final boolean                          urlSafe;
+	private final SecretKeySpec                    secretKey;
+	private final ThreadLocal<Mac>                 keyHashMacs;
+	private final CipherSuite                      cipherSuite;
+	// indexed by ordinal, created once a record of the suite is read or written
+	private final AtomicReferenceArray<AeadCipher> aeadCiphers;
+
+	CryptoEngine(String password, boolean urlSafe) throws GeneralSecurityException {
+		this(password, urlSafe, CipherSuite.AES_CBC);
+	}
+
+	/**
+	 * @param password - The password to derive the key from
+	 * @param urlSafe - Whether the cipher text is encoded as URL-safe Base64
+	 * @param cipherSuite - The {@link CipherSuite} new values are encrypted with
+	 * @throws GeneralSecurityException if the key couldn't be derived or the ciphers aren't supported
+	 */
+	CryptoEngine(String password, boolean urlSafe, CipherSuite cipherSuite) throws GeneralSecurityException {
+		this.secretKey = generateKey(password);
+		this.keyHashMacs = new ThreadLocal<>();
+		this.cipherSuite = cipherSuite;
+		this.aeadCiphers = new AtomicReferenceArray<>(CipherSuite.values().length);
+		IvParameterSpec ivSpec = new IvParameterSpec(new byte[AES_BLOCK_SIZE]);
+		this.encryptCiphers = new CipherPool(AES_MODE, Cipher.ENCRYPT_MODE, secretKey, ivSpec);
+		this.decryptCiphers = new CipherPool(AES_DECRYPT, Cipher.DECRYPT_MODE, secretKey, ivSpec);
+		this.urlSafe = urlSafe;
+		// fail early if the transformation isn't supported by any provider
+		encryptCiphers.borrow();
+		if (cipherSuite != CipherSuite.AES_CBC) {
+			aeadCipher(cipherSuite);
+		}
+	}
+
+	/**
+	 * Initializes the encryption and decryption ciphers of the calling thread. The first initialization also loads the provider classes, which
+	 * are shared by all threads.
+	 * @throws GeneralSecurityException if the ciphers couldn't be initialized
+	 */
+	void warmUp() throws GeneralSecurityException {
+		encryptCiphers.borrow();
+		decryptCiphers.borrow();
+		if (cipherSuite != CipherSuite.AES_CBC) {
+			aeadCipher(cipherSuite).warmUp();
+		}
+	}
+
+	private AeadCipher aeadCipher(CipherSuite suite) throws GeneralSecurityException {
+		AeadCipher aeadCipher = aeadCiphers.get(suite.ordinal());
+		if (aeadCipher == null) {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(new SecretKeySpec(secretKey.getEncoded(), MAC_ALGORITHM));
+			aeadCipher = new AeadCipher(suite, mac.doFinal((VALUE_KEY_INFO + suite.version).getBytes(CHARSET)));
+			// a concurrently created instance is equivalent, whichever is set first is kept
+			if (!aeadCiphers.compareAndSet(suite.ordinal(), null, aeadCipher)) {
+				aeadCipher = aeadCiphers.get(suite.ordinal());
+			}
+		}
+		return aeadCipher;
+	}
+
+	/**
+	 * Computes the keyed hash of the given preference key, which is used instead of its cipher text when keys are hashed.
+	 * The HMAC-SHA256 key is derived from the AES key, so the same key material is never used by two algorithms. Every thread uses its own
+	 * {@link Mac} instance.
+	 * @param key - The plain preference key
+	 * @return The truncated HMAC-SHA256 of the key, encoded as URL-safe Base64
+	 * @throws GeneralSecurityException if the hash couldn't be computed
+	 */
+	String hashKey(String key) throws GeneralSecurityException {
+		Mac mac = keyHashMacs.get();
+		if (mac == null) {
+			mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(new SecretKeySpec(secretKey.getEncoded(), MAC_ALGORITHM));
+			SecretKeySpec keyHashSecret = new SecretKeySpec(mac.doFinal(KEY_HASH_LABEL), MAC_ALGORITHM);
+			mac.init(keyHashSecret);
+			keyHashMacs.set(mac);
+		}
+		byte[] hash = mac.doFinal(key.getBytes(CHARSET));
+		return Base64Codec.encode(Arrays.copyOf(hash, KEY_HASH_SIZE), true);
+	}
+
+	private static SecretKeySpec generateKey(String password) throws GeneralSecurityException {
+		MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		byte[] bytes = password.getBytes(CHARSET);
+		digest.update(bytes, 0, bytes.length);
+		return new SecretKeySpec(digest.digest(), "AES");
+	}
+
+	/**
+	 * Encrypts the given message and returns the Base64 encoded cipher text.
+	 * @param message - The message to encrypt
+	 * @return The Base64 encoded cipher text
+	 * @throws GeneralSecurityException if the message couldn't be encrypted
+	 */
+	String encrypt(String message) throws GeneralSecurityException {
+		return encryptBytes(message.getBytes(CHARSET));
+	}
+
+	/**
+	 * Encrypts the given payload and returns the Base64 encoded cipher text.
+	 * @param payload - The bytes to encrypt
+	 * @return The Base64 encoded cipher text
+	 * @throws GeneralSecurityException if the payload couldn't be encrypted
+	 */
+	String encryptBytes(byte[] payload) throws GeneralSecurityException {
+		byte[] cipherText = doFinal(encryptCiphers, payload);
+		return Base64Codec.encode(cipherText, urlSafe);
+	}
+
+	/**
+	 * Encrypts the given value payload with the configured {@link CipherSuite} and returns the Base64 encoded record.
+	 * Unlike {@link #encryptBytes(byte[])}, the authenticated suites produce a different cipher text every time.
+	 * @param payload - The bytes to encrypt
+	 * @return The Base64 encoded record
+	 * @throws GeneralSecurityException if the payload couldn't be encrypted
+	 */
+	String encryptValue(byte[] payload) throws GeneralSecurityException {
+		if (cipherSuite == CipherSuite.AES_CBC) {
+			return encryptBytes(payload);
+		}
+		return Base64Codec.encode(aeadCipher(cipherSuite).encrypt(payload), urlSafe);
+	}
+
+	/**
+	 * Decrypts the given Base64 encoded AES-CBC cipher text, as written by {@link #encrypt(String)}.
+	 * @param base64CipherText - The Base64 encoded cipher text to decrypt
+	 * @return The decrypted message
+	 * @throws GeneralSecurityException if the cipher text is malformed or couldn't be decrypted
+	 */
+	String decrypt(String base64CipherText) throws GeneralSecurityException {
+		byte[] cipherText = Base64Codec.decode(base64CipherText, urlSafe);
+		if (cipherText == null) {
+			throw new GeneralSecurityException("Invalid Base64 cipher text");
+		}
+		byte[] message = new byte[cipherText.length];
+		return new String(message, 0, decryptCbc(cipherText, cipherText.length, message), CHARSET);
+	}
+
+	/**
+	 * Decrypts the given Base64 encoded cipher text into the original payload. Records of every {@link CipherSuite} can be decrypted, the suite is
+	 * told by the length of the record.
+	 * @param base64CipherText - The Base64 encoded cipher text to decrypt
+	 * @return The decrypted payload
+	 * @throws GeneralSecurityException if the cipher text is malformed or couldn't be decrypted
+	 */
+	byte[] decryptBytes(String base64CipherText) throws GeneralSecurityException {
+		byte[] cipherText = Base64Codec.decode(base64CipherText, urlSafe);
+		if (cipherText == null) {
+			throw new GeneralSecurityException("Invalid Base64 cipher text");
+		}
+		if (AeadCipher.isAuthenticated(cipherText.length)) {
+			return aeadCipher(AeadCipher.suiteOf(cipherText)).decrypt(cipherText);
+		}
+		byte[] payload = new byte[cipherText.length];
+		return Arrays.copyOf(payload, decryptCbc(cipherText, cipherText.length, payload));
+	}
+
+	/**
+	 * Decrypts the Base64 encoded cipher text held by the given buffer into its payload buffer, without allocating. Records of every
+	 * {@link CipherSuite} can be decrypted.
+	 * @param buffer - The {@link ReadBuffer} holding the Base64 encoded cipher text in its characters
+	 * @param length - The number of characters to decrypt
+	 * @throws GeneralSecurityException if the cipher text is malformed or couldn't be decrypted
+	 */
+	void decrypt(ReadBuffer buffer, int length) throws GeneralSecurityException {
+		int cipherTextLength = Base64Codec.decode(buffer.chars, length, urlSafe, buffer.cipherText);
+		if (cipherTextLength < 0) {
+			throw new GeneralSecurityException("Invalid Base64 cipher text");
+		}
+		if (AeadCipher.isAuthenticated(cipherTextLength)) {
+			buffer.payloadLength = aeadCipher(AeadCipher.suiteOf(buffer.cipherText)).decrypt(buffer.cipherText, cipherTextLength, buffer.payload);
+			return;
+		}
+		buffer.payloadLength = decryptCbc(buffer.cipherText, cipherTextLength, buffer.payload);
+	}
+
+	private int decryptCbc(byte[] cipherText, int length, byte[] output) throws GeneralSecurityException {
+		if (length == 0 || length % AES_BLOCK_SIZE != 0) {
+			throw new GeneralSecurityException("Invalid cipher text length " + length);
+		}
+		Cipher cipher = decryptCiphers.borrow();
+		try {
+			cipher.doFinal(cipherText, 0, length, output, 0);
+		} catch (GeneralSecurityException e) {
+			decryptCiphers.discard();
+			throw e;
+		}
+		// PKCS#7, every padding byte holds the padding length; all of them are checked, so a bad padding takes as long as a valid one
+		int padding = output[length - 1] & 0xFF;
+		int invalid = padding == 0 || padding > AES_BLOCK_SIZE ? 1 : 0;
+		for (int i = 1; i <= AES_BLOCK_SIZE; i++) {
+			invalid |= i <= padding && output[length - i] != (byte) padding ? 1 : 0;
+		}
+		if (invalid != 0) {
+			throw new BadPaddingException("Invalid PKCS#7 padding");
+		}
+		return length - padding;
+	}
+
+	private static byte[] doFinal(CipherPool pool, byte[] input) throws GeneralSecurityException {
+		Cipher cipher = pool.borrow();
+		try {
+			return cipher.doFinal(input);
+		} catch (GeneralSecurityException e) {
+			pool.discard();
+			throw e;
+		}
+	}
+
+}
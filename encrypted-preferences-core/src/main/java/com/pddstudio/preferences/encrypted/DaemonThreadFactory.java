@@ -0,0 +1,25 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads for the background work of {@link EncryptedStore}, so they never keep an application process alive.
+ */
+final class DaemonThreadFactory implements ThreadFactory {
+
+	private final String        namePrefix;
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+	DaemonThreadFactory(String namePrefix) {
+		this.namePrefix = namePrefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
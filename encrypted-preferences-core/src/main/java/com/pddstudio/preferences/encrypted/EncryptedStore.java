@@ -0,0 +1,1417 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and writes AES-256 encrypted values of a {@link PreferenceStorage}. This is the platform independent core of {@code EncryptedPreferences},
+ * which only adds the Android specific parts like {@code SharedPreferences} and {@code Context} on top of it. It runs on any JVM, e.g. in unit tests
+ * or benchmarks on a build machine.
+ */
+public final class EncryptedStore {
+
+	private static final String  TAG           = "EncryptedPreferences";
+	private static final int     KEY_MEMO_SIZE       = 256;
+	private static final int     PREFETCH_CACHE_SIZE = 64;
+	private static final Charset CHARSET             = Charset.forName("UTF-8");
+
+	/**
+	 * Interface definition for a filter which decides whether a preference should be included in a bulk read or not.
+	 */
+	public interface KeyFilter {
+
+		/**
+		 * Called for every stored preference during a bulk read.
+		 * @param key The (decrypted) key of the preference.
+		 * @return Whether the preference should be included or not.
+		 */
+		boolean accept(String key);
+	}
+
+	/**
+	 * Interface definition for a callback to be invoked while unencrypted preferences are imported.
+	 */
+	public interface ImportProgressListener {
+
+		/**
+		 * Called whenever another batch of entries was encrypted. Large imports encrypt their batches in parallel, so this might be called on a
+		 * background thread, but never concurrently and always with an increasing count.
+		 * @param processedCount The number of entries processed so far.
+		 * @param totalCount The total number of entries to import.
+		 */
+		void onImportProgress(int processedCount, int totalCount);
+	}
+
+	private final PreferenceStorage storage;
+	private final CryptoEngine      cryptoEngine;
+	private final Logger            logger;
+	private final Logger            editorLogger;
+	// only ever changes from null to a cache, see enableValueCache(int)
+	private volatile ValueCache     valueCache;
+	private final KeyMemo           keyMemo;
+	private final boolean           urlSafeEncoding;
+	private final boolean           binaryValues;
+	private final boolean           hashedKeys;
+	private final PendingWrites     pendingWrites;
+	private final Metrics           metrics;
+
+	private EncryptedStore(Builder builder) {
+		this.logger = new Logger(TAG, builder.debugMessages);
+		if (builder.storage == null) {
+			throw new RuntimeException("Unable to initialize EncryptedStore! Did you forget to set a storage using Builder.withStorage(storage) ?");
+		}
+		this.storage = builder.storage;
+		if (builder.encryptionPassword == null || builder.encryptionPassword.isEmpty()) {
+			throw new RuntimeException("Unable to initialize EncryptedPreferences! Did you forget to set a password using Builder.withEncryptionPassword" + "" +
+											   "(encryptionKey) ?");
+		}
+		CipherSuite cipherSuite = builder.cipherSuite;
+		if (!cipherSuite.isSupported()) {
+			logger.d("{} is not supported on this device, falling back to {}", cipherSuite, CipherSuite.AES_CBC);
+			cipherSuite = CipherSuite.AES_CBC;
+		}
+		try {
+			this.cryptoEngine = new CryptoEngine(builder.encryptionPassword, builder.urlSafeEncoding, cipherSuite);
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Unable to initialize EncryptedPreferences! Failed to derive the encryption key.", e);
+		}
+		this.keyMemo = new KeyMemo(KEY_MEMO_SIZE);
+		this.urlSafeEncoding = builder.urlSafeEncoding;
+		this.binaryValues = builder.binaryValues;
+		this.hashedKeys = builder.hashedKeys;
+		this.pendingWrites = PendingWrites.forStorage(storage);
+		this.metrics = new Metrics(builder.metricsSink);
+		this.editorLogger = new Logger("EncryptedEditor", logger.isEnabled());
+		if (builder.valueCacheSize > 0) {
+			enableValueCache(builder.valueCacheSize);
+		}
+	}
+
+	private synchronized void enableValueCache(int maxEntries) {
+		if (valueCache == null) {
+			// registered first, so no change made after the cache is visible to readers can be missed
+			storage.registerListener(new CacheInvalidator());
+			valueCache = new ValueCache(maxEntries);
+		}
+	}
+
+	/**
+	 * Retrieve the {@link PreferenceStorage} the encrypted values are stored in.
+	 * @return The underlying {@link PreferenceStorage}
+	 */
+	PreferenceStorage storage() {
+		return storage;
+	}
+
+	/**
+	 * Retrieve the {@link Metrics} operations are timed with.
+	 * @return The {@link Metrics} of this store
+	 */
+	Metrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * Loads the underlying storage and the cipher provider classes, so the first read doesn't have to wait for them. Ciphers are pooled per
+	 * thread, so only reads on the calling thread find their ciphers initialized already. When values are preloaded, all stored values are
+	 * decrypted into the value cache as well. Without a value cache, only the decrypted keys are remembered. Blocks until the warm-up finished.
+	 * @param preloadValues - Whether to decrypt all stored values or not
+	 */
+	public void warmUp(boolean preloadValues) {
+		logger.d("warmUp() : loading preferences (preload values: {})", preloadValues);
+		// SharedPreferences loads its file lazily, the first access blocks until it's read
+		Map<String, ?> storedValues = storage.getAll();
+		try {
+			cryptoEngine.warmUp();
+		} catch (GeneralSecurityException e) {
+			e.printStackTrace();
+			return;
+		}
+		if (!preloadValues) {
+			return;
+		}
+		if (valueCache == null) {
+			// without a value cache, at least the decrypted keys can be remembered
+			readAllKeys(true);
+			return;
+		}
+		long cacheVersion = valueCache.version();
+		Map<String, Object> values = readAll(null, BulkProcessor.defaultExecutor());
+		for (Map.Entry<String, Object> value : values.entrySet()) {
+			valueCache.put(value.getKey(), value.getValue(), cacheVersion);
+		}
+		logger.d("warmUp() : cached {} of {} values", values.size(), storedValues.size());
+	}
+
+	String encryptString(String message) {
+		try {
+			String encString = cryptoEngine.encrypt(message);
+			return encodeCharset(encString);
+		} catch (GeneralSecurityException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private String encryptKey(String key) {
+		String encKey = keyMemo.encrypted(key);
+		if (encKey == null) {
+			long startTime = metrics.start();
+			encKey = hashedKeys ? hashKey(key) : encryptString(key);
+			metrics.record(MetricsSink.Operation.ENCRYPT_KEY, startTime);
+			if (encKey != null) {
+				keyMemo.put(key, encKey);
+			}
+		}
+		return encKey;
+	}
+
+	String decryptKey(String encKey) {
+		String key = keyMemo.plain(encKey);
+		if (key == null) {
+			key = hashedKeys ? storedKey(encKey, storage.get(encKey)) : decryptString(encKey);
+			if (key != null) {
+				keyMemo.put(key, encKey);
+			}
+		}
+		return key;
+	}
+
+	private String hashKey(String key) {
+		try {
+			return cryptoEngine.hashKey(key);
+		} catch (GeneralSecurityException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private String storedKey(String hashedKey, Object encValue) {
+		// a hash can't be reversed, the key is restored from the keyed payload stored with its value instead
+		if (!(encValue instanceof String)) {
+			return null;
+		}
+		String key = ValueCodec.keyOf(decryptPayload((String) encValue));
+		return key != null && hashedKey.equals(hashKey(key)) ? key : null;
+	}
+
+	String decryptString(String message) {
+		long startTime = metrics.start();
+		try {
+			String decString = removeEncoding(message);
+			return cryptoEngine.decrypt(decString);
+		} catch (GeneralSecurityException e) {
+			logger.d("decryptString() : unable to decrypt {} ({})", message, e);
+			metrics.record(MetricsSink.Operation.DECRYPT_FAILURE, startTime);
+			return null;
+		}
+	}
+
+	private String encryptPayload(byte[] payload) {
+		try {
+			String encString = cryptoEngine.encryptValue(payload);
+			return encodeCharset(encString);
+		} catch (GeneralSecurityException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private byte[] decryptPayload(String message) {
+		if (message.length() <= ReadBuffer.MAX_LENGTH) {
+			ReadBuffer buffer = ReadBuffer.get();
+			return decryptPayload(message, buffer) ? Arrays.copyOf(buffer.payload, buffer.payloadLength) : null;
+		}
+		long startTime = metrics.start();
+		try {
+			String decString = removeEncoding(message);
+			byte[] payload = cryptoEngine.decryptBytes(decString);
+			metrics.record(MetricsSink.Operation.DECRYPT_VALUE, startTime);
+			return payload;
+		} catch (GeneralSecurityException e) {
+			logger.d("decryptPayload() : unable to decrypt {} ({})", message, e);
+			metrics.record(MetricsSink.Operation.DECRYPT_FAILURE, startTime);
+			return null;
+		}
+	}
+
+	/**
+	 * Decrypts the given value into the payload buffer of the given {@link ReadBuffer}, without allocating.
+	 * @param message - The stored value, at most {@link ReadBuffer#MAX_LENGTH} characters long
+	 * @param buffer - The {@link ReadBuffer} of the calling thread
+	 * @return true if the value was decrypted, false otherwise
+	 */
+	private boolean decryptPayload(String message, ReadBuffer buffer) {
+		long startTime = metrics.start();
+		try {
+			int length = message.length();
+			if (urlSafeEncoding) {
+				message.getChars(0, length, buffer.chars, 0);
+			} else {
+				length = CharsetEncoding.decode(message, buffer.chars);
+			}
+			cryptoEngine.decrypt(buffer, length);
+			metrics.record(MetricsSink.Operation.DECRYPT_VALUE, startTime);
+			return true;
+		} catch (GeneralSecurityException e) {
+			buffer.payloadLength = -1;
+			logger.d("decryptPayload() : unable to decrypt {} ({})", message, e);
+			metrics.record(MetricsSink.Operation.DECRYPT_FAILURE, startTime);
+			return false;
+		}
+	}
+
+	private String removeEncoding(String value) {
+		if (urlSafeEncoding) {
+			return value;
+		}
+		String encodedString = CharsetEncoding.decode(value);
+		logger.d("removeEncoding() : {} => {}", value, encodedString);
+		return encodedString;
+	}
+
+	private String encodeCharset(String value) {
+		if (urlSafeEncoding) {
+			return value;
+		}
+		String encodedString = CharsetEncoding.encode(value);
+		logger.d("encodeCharset() : {} => {}", value, encodedString);
+		return encodedString;
+	}
+
+	private boolean containsEncryptedKey(String encryptedKey) {
+		return storage.contains(encryptedKey);
+	}
+
+	/**
+	 * Looks the value of the given key up in the pending writes and the value cache.
+	 * @param key - The plain preference key
+	 * @param pendingValue - The pending value of the key, might be null
+	 * @return The value, {@link ValueCache#ABSENT} if the key is known to have no value, or null if the value has to be read from the storage
+	 */
+	private Object cachedValue(String key, Object pendingValue) {
+		if (pendingValue != null) {
+			return pendingValue == PendingWrites.REMOVED ? ValueCache.ABSENT : pendingValue;
+		}
+		ValueCache cache = valueCache;
+		if (cache == null) {
+			return null;
+		}
+		Object cached = cache.get(key);
+		if (cached != null) {
+			logger.d("cachedValue() => cache hit for key => {}", key);
+		}
+		return cached;
+	}
+
+	private Object readValue(String key, Object cached) {
+		if (cached != null) {
+			return cached == ValueCache.ABSENT ? null : cached;
+		}
+		ValueCache cache = valueCache;
+		if (cache == null) {
+			return ValueCodec.decode(readPayload(key));
+		}
+		long cacheVersion = cache.version();
+		Object value = ValueCodec.decode(readPayload(key));
+		cache.put(key, value == null ? ValueCache.ABSENT : value, cacheVersion);
+		return value;
+	}
+
+	/**
+	 * Records a read once the getter decoded its result. A getter can't tell a stored value which equals the default value from one which couldn't
+	 * be decoded by the result alone, so it decodes the value again with another default value: only a missing or unconvertible value results in
+	 * that other default as well.
+	 * @param hit - Whether the value was pending or cached
+	 * @param defaulted - Whether the getter returns the default value because there is no value of the requested type
+	 * @param startTime - The start time of the getter
+	 */
+	private void recordRead(boolean hit, boolean defaulted, long startTime) {
+		MetricsSink.Operation operation = hit ? MetricsSink.Operation.GET_HIT : MetricsSink.Operation.GET_MISS;
+		metrics.record(defaulted ? MetricsSink.Operation.GET_DEFAULT : operation, startTime);
+	}
+
+	/**
+	 * Reads the payload of the given key into the {@link ReadBuffer} of the calling thread, which lets the primitive getters decode it without
+	 * allocating. Keyed payloads and values too long for the buffer have to be read by {@link #readValue(String, Object)} instead.
+	 * @param key - The plain preference key
+	 * @return The {@link ReadBuffer} holding the payload, with a negative length if there is no (readable) value, or null if the value has to be
+	 * read by {@link #readValue(String, Object)}
+	 */
+	private ReadBuffer readPayloadBuffered(String key) {
+		if (hashedKeys) {
+			return null;
+		}
+		String encKey = encryptKey(key);
+
+		logger.d("readPayloadBuffered() => encryptedKey => {}", encKey);
+
+		ReadBuffer buffer = ReadBuffer.get();
+		buffer.payloadLength = -1;
+		String value = encKey == null || encKey.isEmpty() ? null : storage.get(encKey);
+		if (value != null && !value.isEmpty()) {
+			if (value.length() > ReadBuffer.MAX_LENGTH) {
+				return null;
+			}
+			decryptPayload(value, buffer);
+		}
+		return buffer;
+	}
+
+	private byte[] readPayload(String key) {
+		String encKey = encryptKey(key);
+
+		logger.d("readPayload() => encryptedKey => {}", encKey);
+
+		if (encKey == null || encKey.isEmpty() || !containsEncryptedKey(encKey)) {
+			logger.d("unable to encrypt or find key => {}", encKey);
+			return null;
+		}
+
+		String value = storage.get(encKey);
+
+		logger.d("readPayload() => encryptedValue => {}", value);
+
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+
+		return unwrapPayload(key, decryptPayload(value));
+	}
+
+	private byte[] unwrapPayload(String key, byte[] payload) {
+		if (!hashedKeys) {
+			return payload;
+		}
+		// guards against hash collisions and values copied to another key
+		return key.equals(ValueCodec.keyOf(payload)) ? ValueCodec.payloadOf(payload) : null;
+	}
+
+	private String encryptValue(String key, Object value) {
+		byte[] payload = binaryValues ? encodeBinaryValue(value) : String.valueOf(value).getBytes(CHARSET);
+		return encryptPayload(hashedKeys ? ValueCodec.encodeKeyed(key, payload) : payload);
+	}
+
+	private Object pendingValue(String key) {
+		if (pendingWrites.isEmpty()) {
+			return null;
+		}
+		String encKey = encryptKey(key);
+		return encKey == null ? null : pendingWrites.lookup(encKey);
+	}
+
+	private PendingWrites.Batch stageChanges(Map<String, Object> changes, boolean clear) {
+		Map<String, Object> encryptedChanges = new HashMap<>(changes.size() * 4 / 3 + 1);
+		Map<String, String> plainKeys = new HashMap<>(changes.size() * 4 / 3 + 1);
+		for (Map.Entry<String, Object> change : changes.entrySet()) {
+			String encKey = encryptKey(change.getKey());
+			if (encKey == null) {
+				logger.d("stageChanges() : unable to encrypt key {} ! Skipping...", change.getKey());
+			} else {
+				encryptedChanges.put(encKey, change.getValue());
+				plainKeys.put(encKey, change.getKey());
+			}
+		}
+		return pendingWrites.stage(encryptedChanges, plainKeys, clear);
+	}
+
+	private boolean writeBatch(PendingWrites.Batch batch, boolean commit) {
+		try {
+			PreferenceStorage.Editor editor = storage.edit();
+			if (batch.clear) {
+				editor.clear();
+			}
+			boolean encrypted = true;
+			for (Map.Entry<String, Object> change : batch.changes.entrySet()) {
+				if (change.getValue() == PendingWrites.REMOVED) {
+					logger.d("writeBatch() : remove [{}]", change.getKey());
+					editor.remove(change.getKey());
+				} else {
+					String encValue = encryptValue(batch.plainKeys.get(change.getKey()), change.getValue());
+					logger.d("writeBatch() : put [{}] || [{}]", change.getKey(), encValue);
+					if (encValue != null) {
+						editor.put(change.getKey(), encValue);
+					} else {
+						logger.d("writeBatch() : unable to encrypt value for {} ! Skipping...", batch.plainKeys.get(change.getKey()));
+						encrypted = false;
+					}
+				}
+			}
+			boolean written = encrypted;
+			if (commit) {
+				written = editor.commit() && encrypted;
+			} else {
+				editor.apply();
+			}
+			invalidateCachedValues(batch.plainKeys.values(), batch.clear);
+			return written;
+		} finally {
+			pendingWrites.complete(batch);
+		}
+	}
+
+	private <T> T runOnWriter(Callable<T> task, T failureResult) {
+		if (pendingWrites.isWriterThread()) {
+			// e.g. a commit from a listener which is notified on the writer thread, waiting for the writer would never return
+			try {
+				return task.call();
+			} catch (Exception e) {
+				e.printStackTrace();
+				return failureResult;
+			}
+		}
+		Future<T> future = pendingWrites.writerExecutor().submit(task);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return failureResult;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return failureResult;
+		}
+	}
+
+	private void invalidateCachedValues(Collection<String> keys, boolean all) {
+		if (valueCache == null) {
+			return;
+		}
+		if (all) {
+			valueCache.invalidateAll();
+		} else {
+			for (String key : keys) {
+				valueCache.invalidate(key);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve an int value from the preferences.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return int - Returns the preference value if it exists, or defValue. Throws ClassCastException if there is a preference with this name that is not an
+	 * int.
+	 */
+	public int getInt(String key, int defaultValue) {
+		long startTime = metrics.start();
+		Object pendingValue = pendingValue(key);
+		if (pendingValue == null && valueCache == null) {
+			ReadBuffer buffer = readPayloadBuffered(key);
+			if (buffer != null) {
+				int value = ValueCodec.decodeInt(buffer.payload, buffer.payloadLength, defaultValue);
+				recordRead(false, value == defaultValue && ValueCodec.decodeInt(buffer.payload, buffer.payloadLength, ~defaultValue) != value, startTime);
+				return value;
+			}
+		}
+		Object cached = cachedValue(key, pendingValue);
+		Object stored = readValue(key, cached);
+		int value = ValueCodec.toInt(stored, defaultValue);
+		recordRead(cached != null, value == defaultValue && ValueCodec.toInt(stored, ~defaultValue) != value, startTime);
+		return value;
+	}
+
+	/**
+	 * Retrieve a long value from the preferences.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return long - Returns the preference value if it exists, or defValue. Throws ClassCastException if there is a preference with this name that is not a
+	 * long
+	 */
+	public long getLong(String key, long defaultValue) {
+		long startTime = metrics.start();
+		Object pendingValue = pendingValue(key);
+		if (pendingValue == null && valueCache == null) {
+			ReadBuffer buffer = readPayloadBuffered(key);
+			if (buffer != null) {
+				long value = ValueCodec.decodeLong(buffer.payload, buffer.payloadLength, defaultValue);
+				recordRead(false, value == defaultValue && ValueCodec.decodeLong(buffer.payload, buffer.payloadLength, ~defaultValue) != value, startTime);
+				return value;
+			}
+		}
+		Object cached = cachedValue(key, pendingValue);
+		Object stored = readValue(key, cached);
+		long value = ValueCodec.toLong(stored, defaultValue);
+		recordRead(cached != null, value == defaultValue && ValueCodec.toLong(stored, ~defaultValue) != value, startTime);
+		return value;
+	}
+
+	/**
+	 * Retrieve a boolean value from the preferences
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return - Returns the preference value if it exists, or defValue. Throws ClassCastException if there is a preference with this name that is not a
+	 * boolean
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		long startTime = metrics.start();
+		Object pendingValue = pendingValue(key);
+		if (pendingValue == null && valueCache == null) {
+			ReadBuffer buffer = readPayloadBuffered(key);
+			if (buffer != null) {
+				boolean value = ValueCodec.decodeBoolean(buffer.payload, buffer.payloadLength, defaultValue);
+				recordRead(false, value == defaultValue && ValueCodec.decodeBoolean(buffer.payload, buffer.payloadLength, !defaultValue) != value, startTime);
+				return value;
+			}
+		}
+		Object cached = cachedValue(key, pendingValue);
+		Object stored = readValue(key, cached);
+		boolean value = ValueCodec.toBoolean(stored, defaultValue);
+		recordRead(cached != null, value == defaultValue && ValueCodec.toBoolean(stored, !defaultValue) != value, startTime);
+		return value;
+	}
+
+	/**
+	 * Retrieve a float value from the preferences
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return float - Returns the preference value if it exists, or defValue. Throws ClassCastException if there is a preference with this name that is not a
+	 * float
+	 */
+	public float getFloat(String key, float defaultValue) {
+		long startTime = metrics.start();
+		Object pendingValue = pendingValue(key);
+		float otherDefault = Float.isNaN(defaultValue) ? 0f : Float.NaN;
+		if (pendingValue == null && valueCache == null) {
+			ReadBuffer buffer = readPayloadBuffered(key);
+			if (buffer != null) {
+				float value = ValueCodec.decodeFloat(buffer.payload, buffer.payloadLength, defaultValue);
+				float other = ValueCodec.decodeFloat(buffer.payload, buffer.payloadLength, otherDefault);
+				recordRead(false, Float.compare(value, defaultValue) == 0 && Float.compare(other, value) != 0, startTime);
+				return value;
+			}
+		}
+		Object cached = cachedValue(key, pendingValue);
+		Object stored = readValue(key, cached);
+		float value = ValueCodec.toFloat(stored, defaultValue);
+		recordRead(cached != null, Float.compare(value, defaultValue) == 0 && Float.compare(ValueCodec.toFloat(stored, otherDefault), value) != 0, startTime);
+		return value;
+	}
+
+	/**
+	 * Retrieve a String value from the preferences
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return String - Returns the preference value if it exists, or defValue. Throws ClassCastException if there is a preference with this name that is not
+	 * a String
+	 */
+	public String getString(String key, String defaultValue) {
+		long startTime = metrics.start();
+		Object cached = cachedValue(key, pendingValue(key));
+		String value = ValueCodec.toString(readValue(key, cached), null);
+		recordRead(cached != null, value == null, startTime);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Asynchronously retrieve a String value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getString(String, String)
+	 */
+	public Future<String> getStringAsync(final String key, final String defaultValue) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return getString(key, defaultValue);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously retrieve an int value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getInt(String, int)
+	 */
+	public Future<Integer> getIntAsync(final String key, final int defaultValue) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return getInt(key, defaultValue);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously retrieve a long value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getLong(String, long)
+	 */
+	public Future<Long> getLongAsync(final String key, final long defaultValue) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				return getLong(key, defaultValue);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously retrieve a float value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getFloat(String, float)
+	 */
+	public Future<Float> getFloatAsync(final String key, final float defaultValue) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<Float>() {
+			@Override
+			public Float call() throws Exception {
+				return getFloat(key, defaultValue);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously retrieve a boolean value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getBoolean(String, boolean)
+	 */
+	public Future<Boolean> getBooleanAsync(final String key, final boolean defaultValue) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return getBoolean(key, defaultValue);
+			}
+		});
+	}
+
+	/**
+	 * Decrypts the values of the given keys on a small, shared pool of background threads, so later reads don't have to decrypt them again.
+	 * Call this early (e.g. in {@code Application.onCreate()}) for keys which are needed right away, like the ones read while drawing the first frame.
+	 * The decrypted values are kept in the value cache (see {@link Builder#withValueCache(int)}). Without a configured cache, the first call
+	 * enables one for {@code 64} values, or for all given keys if there are more.
+	 * @param keys - The names of the preferences to decrypt
+	 * @return A {@linkplain Future} which completes once all values are decrypted.
+	 */
+	public Future<?> prefetch(final String... keys) {
+		if (valueCache == null) {
+			logger.d("prefetch() : enabling a value cache to keep the decrypted values");
+			enableValueCache(Math.max(PREFETCH_CACHE_SIZE, keys.length));
+		}
+		return BulkProcessor.defaultExecutor().submit(new Runnable() {
+			@Override
+			public void run() {
+				for (String key : keys) {
+					readValue(key, cachedValue(key, pendingValue(key)));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Retrieve a {@linkplain Set<String>} of all currently stored keys.
+	 * @param decrypt - Whether to decrypt stored keys before returning them or not.
+	 * @return {@linkplain Set<String>} - Set with all stored keys.
+	 */
+	public Set<String> getAllKeys(boolean decrypt) {
+		PendingWrites.Snapshot pendingChanges = pendingWrites.snapshot();
+		Set<String> keys = readAllKeys(decrypt);
+		if (pendingChanges.isEmpty()) {
+			return keys;
+		}
+		keys = new HashSet<>(keys);
+		if (pendingChanges.clearPending) {
+			keys.clear();
+		}
+		for (Map.Entry<String, Object> change : pendingChanges.values.entrySet()) {
+			String key = decrypt ? pendingKey(pendingChanges, change.getKey()) : change.getKey();
+			if (key == null) {
+				continue;
+			}
+			if (change.getValue() == PendingWrites.REMOVED) {
+				keys.remove(key);
+			} else {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	private Set<String> readAllKeys(boolean decrypt) {
+		if(decrypt) {
+			List<String> storedKeys = new ArrayList<>(storage.getAll().keySet());
+			List<Set<String>> chunks = BulkProcessor.process(storedKeys, BulkProcessor.defaultExecutor(), new BulkProcessor.ChunkTask<String, Set<String>>() {
+				@Override
+				public Set<String> process(List<String> chunk) {
+					Set<String> decryptedKeySet = new HashSet<>(chunk.size() * 4 / 3 + 1);
+					for (String key : chunk) {
+						decryptedKeySet.add(decryptKey(key));
+					}
+					return decryptedKeySet;
+				}
+			});
+			if (chunks.size() == 1) {
+				return chunks.get(0);
+			}
+			Set<String> decryptedKeySet = new HashSet<>(storedKeys.size() * 4 / 3 + 1);
+			for (Set<String> chunk : chunks) {
+				decryptedKeySet.addAll(chunk);
+			}
+			return decryptedKeySet;
+		}
+		return storage.getAll().keySet();
+	}
+
+	/**
+	 * Asynchronously retrieve a {@linkplain Set<String>} of all currently stored keys.
+	 * Large preferences are decrypted in parallel on a small, shared pool of background threads.
+	 * @param decrypt - Whether to decrypt stored keys before returning them or not.
+	 * @return A {@linkplain Future} which provides the Set with all stored keys once available.
+	 */
+	public Future<Set<String>> getAllKeysAsync(final boolean decrypt) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<Set<String>>() {
+			@Override
+			public Set<String> call() throws Exception {
+				return getAllKeys(decrypt);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve a {@linkplain Set<String>} of all currently stored keys.
+	 * @return {@linkplain Set<String>} - Set with all stored keys.
+	 */
+	public Set<String> getAllKeys() {
+		return getAllKeys(true);
+	}
+
+	/**
+	 * Retrieve all values from the preferences.
+	 * Values written in the text format are returned as String, values written in the binary format keep their type.
+	 * @return Map - Returns a map containing the decrypted key/value pairs representing the preferences.
+	 */
+	public Map<String, ?> getAll() {
+		return getAll(null, null);
+	}
+
+	/**
+	 * Retrieve all values from the preferences whose key is accepted by the given {@link KeyFilter}.
+	 * @param keyFilter - The {@link KeyFilter} to apply, or null to retrieve all values
+	 * @return Map - Returns a map containing the decrypted key/value pairs representing the preferences.
+	 * @see #getAll()
+	 */
+	public Map<String, ?> getAll(KeyFilter keyFilter) {
+		return getAll(keyFilter, null);
+	}
+
+	/**
+	 * Retrieve all values from the preferences whose key is accepted by the given {@link KeyFilter}.
+	 * The underlying preferences are read once and decrypted in a single pass. For large preferences the decryption is split into chunks which
+	 * are run on the given {@linkplain Executor}, while the calling thread waits for the result.
+	 * @param keyFilter - The {@link KeyFilter} to apply, or null to retrieve all values
+	 * @param executor - The {@linkplain Executor} to decrypt chunks on, or null to decrypt everything on the calling thread
+	 * @return Map - Returns a map containing the decrypted key/value pairs representing the preferences.
+	 * @see #getAll()
+	 */
+	public Map<String, ?> getAll(final KeyFilter keyFilter, Executor executor) {
+		// taken before the underlying preferences are read, so batches written in between are contained in either of both
+		PendingWrites.Snapshot pendingChanges = pendingWrites.snapshot();
+		Map<String, Object> values = readAll(keyFilter, executor);
+		if (pendingChanges.clearPending) {
+			values.clear();
+		}
+		for (Map.Entry<String, Object> change : pendingChanges.values.entrySet()) {
+			String key = pendingKey(pendingChanges, change.getKey());
+			if (key == null || (keyFilter != null && !keyFilter.accept(key))) {
+				continue;
+			}
+			Object value = change.getValue() == PendingWrites.REMOVED ? null : storedValue(change.getValue());
+			if (value == null) {
+				values.remove(key);
+			} else {
+				values.put(key, value);
+			}
+		}
+		return values;
+	}
+
+	private String pendingKey(PendingWrites.Snapshot pendingChanges, String encKey) {
+		// changes staged by instances using another password are skipped, like their stored values
+		String key = pendingChanges.plainKeys.get(encKey);
+		return key != null && encKey.equals(encryptKey(key)) ? key : null;
+	}
+
+	private Object storedValue(Object value) {
+		// the value as it's going to be read back from the underlying preferences once it's written
+		if (binaryValues) {
+			return ValueCodec.decode(encodeBinaryValue(value));
+		}
+		String text = String.valueOf(value);
+		return text.isEmpty() ? null : text;
+	}
+
+	private Map<String, Object> readAll(final KeyFilter keyFilter, Executor executor) {
+		List<Map.Entry<String, ?>> entries = new ArrayList<Map.Entry<String, ?>>(storage.getAll().entrySet());
+		List<Map<String, Object>> chunks = BulkProcessor.process(entries, executor, new BulkProcessor.ChunkTask<Map.Entry<String, ?>, Map<String, Object>>() {
+			@Override
+			public Map<String, Object> process(List<Map.Entry<String, ?>> chunk) {
+				return decryptEntries(chunk, keyFilter);
+			}
+		});
+		if (chunks.size() == 1) {
+			return chunks.get(0);
+		}
+		Map<String, Object> values = new HashMap<>(entries.size() * 4 / 3 + 1);
+		for (Map<String, Object> chunk : chunks) {
+			values.putAll(chunk);
+		}
+		return values;
+	}
+
+	/**
+	 * Asynchronously retrieve all values from the preferences whose key is accepted by the given {@link KeyFilter}.
+	 * The preferences are decrypted on a small, shared pool of background threads.
+	 * @param keyFilter - The {@link KeyFilter} to apply, or null to retrieve all values
+	 * @return A {@linkplain Future} which provides the map containing the decrypted key/value pairs once available.
+	 * @see #getAll(KeyFilter, Executor)
+	 */
+	public Future<Map<String, ?>> getAllAsync(final KeyFilter keyFilter) {
+		return BulkProcessor.defaultExecutor().submit(new Callable<Map<String, ?>>() {
+			@Override
+			public Map<String, ?> call() throws Exception {
+				return getAll(keyFilter, BulkProcessor.defaultExecutor());
+			}
+		});
+	}
+
+	private Map<String, Object> decryptEntries(List<Map.Entry<String, ?>> entries, KeyFilter keyFilter) {
+		Map<String, Object> values = new HashMap<>(entries.size() * 4 / 3 + 1);
+		for (Map.Entry<String, ?> entry : entries) {
+			if (!(entry.getValue() instanceof String)) {
+				logger.d("decryptEntries() : skipping unencrypted value for key {}", entry.getKey());
+				continue;
+			}
+			byte[] payload = decryptPayload((String) entry.getValue());
+			String key;
+			if (hashedKeys) {
+				key = ValueCodec.keyOf(payload);
+				if (key == null || !entry.getKey().equals(encryptKey(key))) {
+					continue;
+				}
+				payload = ValueCodec.payloadOf(payload);
+			} else {
+				key = decryptKey(entry.getKey());
+			}
+			if (key == null || (keyFilter != null && !keyFilter.accept(key))) {
+				continue;
+			}
+			Object value = ValueCodec.decode(payload);
+			if (value != null) {
+				values.put(key, value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Checks whether the preferences contains a preference.
+	 * @param key - The name of the preference to check
+	 * @return Returns true if the preference exists in the preferences, otherwise false.
+	 */
+	public boolean contains(String key) {
+		long startTime = metrics.start();
+		Object pendingValue = pendingValue(key);
+		boolean contained;
+		if (pendingValue != null) {
+			contained = pendingValue != PendingWrites.REMOVED;
+		} else {
+			String encKey = encryptKey(key);
+			contained = storage.contains(encKey);
+		}
+		metrics.record(MetricsSink.Operation.CONTAINS, startTime);
+		return contained;
+	}
+
+	/**
+	 * Get the Editor for this store, through which you can make modifications to the data and atomically commit those changes back to the storage.
+	 * Every call returns a new, independent {@link Editor}, so concurrent writers don't interfere with each other's pending changes.
+	 * @return {@link Editor}
+	 */
+	public Editor edit() {
+		return new Editor(this);
+	}
+
+	/**
+	 * Encrypts the given unencrypted values and writes them with a single commit, after all previously applied changes. Large imports are
+	 * encrypted in parallel. Blocks until all changes are written.
+	 * @param values - The unencrypted keys and values to import
+	 * @param override - Whether to override existing keys (and their values) or not
+	 * @param progressListener - An optional {@link ImportProgressListener} to be notified about the encryption progress
+	 * @return The {@link ImportedValues} of this import
+	 */
+	ImportedValues importValues(Map<String, ?> values, final boolean override, final ImportProgressListener progressListener) {
+		final List<Map.Entry<String, ?>> entries = new ArrayList<Map.Entry<String, ?>>(values.entrySet());
+		final Set<String> existingKeys = getAllKeys(false);
+		final AtomicInteger processedCount = new AtomicInteger();
+		BulkProcessor.ChunkTask<Map.Entry<String, ?>, List<ImportEntry>> encryptTask = new BulkProcessor.ChunkTask<Map.Entry<String, ?>, List<ImportEntry>>() {
+			@Override
+			public List<ImportEntry> process(List<Map.Entry<String, ?>> chunk) {
+				List<ImportEntry> importEntries = new ArrayList<>(chunk.size());
+				for (Map.Entry<String, ?> value : chunk) {
+					importEntries.add(encryptImportEntry(value.getKey(), value.getValue(), existingKeys, override));
+				}
+				if (progressListener != null) {
+					// chunks are encrypted in parallel, report them one after another
+					synchronized (progressListener) {
+						progressListener.onImportProgress(processedCount.addAndGet(chunk.size()), entries.size());
+					}
+				}
+				return importEntries;
+			}
+		};
+		List<List<ImportEntry>> chunks = BulkProcessor.process(entries, BulkProcessor.defaultExecutor(), encryptTask);
+
+		final PreferenceStorage.Editor batchEditor = storage.edit();
+		final List<String> importedKeys = new ArrayList<>(entries.size());
+		for (List<ImportEntry> chunk : chunks) {
+			for (ImportEntry entry : chunk) {
+				if (entry.encryptedKey == null || entry.encryptedValue == null) {
+					logger.d("-> Skip import for {} : key already exist or couldn't be encrypted", entry.key);
+				} else {
+					logger.d("-> Importing key: {}", entry.key);
+					batchEditor.put(entry.encryptedKey, entry.encryptedValue);
+					importedKeys.add(entry.key);
+				}
+			}
+		}
+		// written on the writer thread, so previously applied changes can't overwrite the imported entries afterwards
+		boolean committed = importedKeys.isEmpty() || runOnWriter(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				boolean written = batchEditor.commit();
+				invalidateCachedValues(new HashSet<>(importedKeys), false);
+				return written;
+			}
+		}, false);
+		logger.d("Import finished! ({}/{} entries imported)", importedKeys.size(), entries.size());
+		return new ImportedValues(importedKeys, committed);
+	}
+
+	private ImportEntry encryptImportEntry(String key, Object value, Set<String> existingKeys, boolean override) {
+		String encKey = encryptKey(key);
+		if (encKey == null || (!override && existingKeys.contains(encKey))) {
+			return new ImportEntry(key, null, null);
+		}
+		return new ImportEntry(key, encKey, encryptValue(key, value));
+	}
+
+	private static byte[] encodeBinaryValue(Object value) {
+		if (value instanceof Integer) {
+			return ValueCodec.encodeInt((Integer) value);
+		} else if (value instanceof Long) {
+			return ValueCodec.encodeLong((Long) value);
+		} else if (value instanceof Float) {
+			return ValueCodec.encodeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			return ValueCodec.encodeBoolean((Boolean) value);
+		} else {
+			return ValueCodec.encodeString(String.valueOf(value));
+		}
+	}
+
+	private class CacheInvalidator implements PreferenceStorage.Listener {
+
+		@Override
+		public void onStorageChanged(PreferenceStorage storage, String key) {
+			ValueCache cache = valueCache;
+			if (cache == null) {
+				// the cache is being enabled and still empty
+				return;
+			}
+			String decryptedKey = key == null ? null : decryptKey(key);
+			if (decryptedKey == null) {
+				logger.d("CacheInvalidator : unable to decrypt changed key, invalidating all cached values.");
+				cache.invalidateAll();
+			} else {
+				cache.invalidate(decryptedKey);
+			}
+		}
+
+	}
+
+	static final class ImportedValues {
+
+		final List<String> keys;
+		final boolean      committed;
+
+		private ImportedValues(List<String> keys, boolean committed) {
+			this.keys = keys;
+			this.committed = committed;
+		}
+	}
+
+	private static final class ImportEntry {
+
+		private final String key;
+		private final String encryptedKey;
+		private final String encryptedValue;
+
+		private ImportEntry(String key, String encryptedKey, String encryptedValue) {
+			this.key = key;
+			this.encryptedKey = encryptedKey;
+			this.encryptedValue = encryptedValue;
+		}
+	}
+
+	/**
+	 * Class used for modifying values in an {@link EncryptedStore}. All changes you make in an editor are batched, and not copied back to the
+	 * store until you call {@link Editor#apply()} or {@link Editor#commit()}.
+	 * Changes are kept in plain text until they're applied or committed, so every key is encrypted only once per batch, no matter how often it was
+	 * modified.
+	 */
+	public static final class Editor {
+
+		private final EncryptedStore      store;
+		private final Logger              logger;
+		private final Map<String, Object> modifications;
+		private       boolean             cleared;
+
+		private Editor(EncryptedStore store) {
+			this.store = store;
+			this.logger = store.editorLogger;
+			this.modifications = new HashMap<>();
+		}
+
+		private synchronized Editor putValue(String key, Object value) {
+			long startTime = store.metrics.start();
+			logger.d("putValue() => {} || {}", key, value);
+			// like SharedPreferences, a null value is equivalent to removing the key
+			modifications.put(key, value == null ? PendingWrites.REMOVED : value);
+			store.metrics.record(MetricsSink.Operation.PUT, startTime);
+			return this;
+		}
+
+		/**
+		 * Set a String value in the preferences editor, to be written back once apply() is called.
+		 * @param key - The name of the preference to modify
+		 * @param value - The new value for the preference
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public Editor putString(String key, String value) {
+			return putValue(key, value);
+		}
+
+		/**
+		 * Set an int value in the preferences editor, to be written back once apply() is called.
+		 * @param key - The name of the preference to modify
+		 * @param value - The new value for the preference
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public Editor putInt(String key, int value) {
+			return putValue(key, value);
+		}
+
+		/**
+		 * Set a long value in the preferences editor, to be written back once apply() is called.
+		 * @param key - The name of the preference to modify
+		 * @param value - The new value for the preference
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public Editor putLong(String key, long value) {
+			return putValue(key, value);
+		}
+
+		/**
+		 * Set a float value in the preferences editor, to be written back once apply() is called.
+		 * @param key - The name of the preference to modify
+		 * @param value - The new value for the preference
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public Editor putFloat(String key, float value) {
+			return putValue(key, value);
+		}
+
+		/**
+		 * Set a boolean value in the preferences editor, to be written back once apply() is called.
+		 * @param key - The name of the preference to modify
+		 * @param value - The new value for the preference
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public Editor putBoolean(String key, boolean value) {
+			return putValue(key, value);
+		}
+
+		/**
+		 * Mark in the editor that a preference value should be removed, which will be done in the actual preferences once apply() is called.
+		 * @param key - The name of the preference to remove
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public Editor remove(String key) {
+			logger.d("remove() => {}", key);
+			return putValue(key, null);
+		}
+
+		/**
+		 * Mark in the editor to remove all values from the preferences. Once commit is called, the only remaining preferences will be any that you have
+		 * defined in this editor.
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		public synchronized Editor clear() {
+			logger.d("clear() => clearing preferences.");
+			cleared = true;
+			return this;
+		}
+
+		/**
+		 * Commit your preferences changes back from this Editor to the {@link EncryptedStore} it is editing. This atomically performs the
+		 * requested
+		 * modifications, replacing whatever is currently in the {@link EncryptedStore}.
+		 * The changes are visible to readers immediately, while the encryption and the disk write happen asynchronously on the writer thread of
+		 * the underlying storage.
+		 * <p>This is a weaker guarantee than {@code SharedPreferences.Editor#apply()}: until the writer thread encrypted the changes and handed
+		 * them to the storage, they only exist in memory. Android doesn't wait for them when it flushes pending preference writes while an
+		 * activity is paused or stopped, and the writer is a daemon thread, so they're lost if the process ends first. Use {@link #commit()}
+		 * for changes which must not get lost.
+		 */
+		public void apply() {
+			long startTime = store.metrics.start();
+			final Map<String, Object> changes;
+			final boolean clear;
+			synchronized (this) {
+				if (modifications.isEmpty() && !cleared) {
+					return;
+				}
+				changes = new HashMap<>(modifications);
+				clear = cleared;
+				modifications.clear();
+				cleared = false;
+			}
+			final PendingWrites.Batch batch = store.stageChanges(changes, clear);
+			store.pendingWrites.writerExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					store.writeBatch(batch, false);
+				}
+			});
+			store.metrics.record(MetricsSink.Operation.APPLY, startTime);
+		}
+
+		/**
+		 * Commit your preferences changes back from this Editor to the
+		 * {@link EncryptedStore} it is editing.  This atomically
+		 * performs the requested modifications, replacing whatever is currently
+		 * in the store.
+		 *
+		 * <p>Note that when two editors are modifying preferences at the same
+		 * time, the last one to call commit wins.
+		 *
+		 * <p>If you don't care about the return value and you're
+		 * using this from your application's main thread, consider
+		 * using {@link #apply} instead.
+		 *
+		 * @return Returns true if the new values were successfully written
+		 * to persistent storage.
+		 */
+		public boolean commit() {
+			long startTime = store.metrics.start();
+			final Map<String, Object> changes;
+			final boolean clear;
+			synchronized (this) {
+				changes = new HashMap<>(modifications);
+				clear = cleared;
+				modifications.clear();
+				cleared = false;
+			}
+			final PendingWrites.Batch batch = store.stageChanges(changes, clear);
+			// commits are written on the writer thread as well, so they can't overtake previously applied changes
+			boolean written = store.runOnWriter(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return store.writeBatch(batch, true);
+				}
+			}, false);
+			store.metrics.record(MetricsSink.Operation.COMMIT, startTime);
+			return written;
+		}
+
+		/**
+		 * Commits your preferences changes like {@link #commit()}, but without waiting for the write.
+		 * @return A {@linkplain Future} which completes with the result of {@link #commit()} once the changes were written.
+		 */
+		Future<Boolean> commitAsync() {
+			final Map<String, Object> changes;
+			final boolean clear;
+			synchronized (this) {
+				changes = new HashMap<>(modifications);
+				clear = cleared;
+				modifications.clear();
+				cleared = false;
+			}
+			final PendingWrites.Batch batch = store.stageChanges(changes, clear);
+			FutureTask<Boolean> write = new FutureTask<>(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return store.writeBatch(batch, true);
+				}
+			});
+			if (store.pendingWrites.isWriterThread()) {
+				// waiting for a queued task would never return on the writer thread
+				write.run();
+			} else {
+				store.pendingWrites.writerExecutor().execute(write);
+			}
+			return write;
+		}
+
+	}
+
+	/**
+	 * Class for configuring a new {@link EncryptedStore} instance.
+	 */
+	public static final class Builder {
+
+		private PreferenceStorage storage;
+		private String            encryptionPassword;
+		private int               valueCacheSize = 0;
+		private boolean           urlSafeEncoding = false;
+		private boolean           binaryValues = false;
+		private boolean           hashedKeys = false;
+		private CipherSuite       cipherSuite = CipherSuite.AES_CBC;
+		private boolean           debugMessages = false;
+		private MetricsSink       metricsSink;
+
+		/**
+		 * Specify the {@link PreferenceStorage} which should be used to read and write values.
+		 * @param storage - The {@link PreferenceStorage} to use
+		 * @return
+		 * @see InMemoryStorage
+		 * @see LogStructuredStorage
+		 */
+		public Builder withStorage(PreferenceStorage storage) {
+			this.storage = storage;
+			return this;
+		}
+
+		PreferenceStorage storage() {
+			return storage;
+		}
+
+		/**
+		 * Specify the encryption password which should be used when reading and writing values.
+		 * @param encryptionPassword - The encryption password which should be used when reading and writing values
+		 * @return
+		 */
+		public Builder withEncryptionPassword(String encryptionPassword) {
+			this.encryptionPassword = encryptionPassword;
+			return this;
+		}
+
+		/**
+		 * Enables an in-memory cache for decrypted values, so repeated reads of the same key don't have to decrypt the stored value again.
+		 * Cached values are invalidated whenever they are changed through an {@link Editor} or the underlying {@link PreferenceStorage}.
+		 * Keep in mind that cached values are held as plain text in memory.
+		 * @param maxEntries - The maximum number of decrypted values to keep, a value of 0 or less disables the cache (default)
+		 * @return
+		 */
+		public Builder withValueCache(int maxEntries) {
+			this.valueCacheSize = maxEntries;
+			return this;
+		}
+
+		/**
+		 * Store keys and values as URL-safe Base64 ({@code -} and {@code _} instead of {@code +} and {@code /}, without padding).
+		 * URL-safe Base64 only consists of characters which are valid in preference files, so no additional escaping pass is required.
+		 * <b>This option is meant for new preferences only</b>, values written without it can't be read while it's enabled and vice versa.
+		 * @param urlSafeEncoding - Whether to use URL-safe Base64 or not (default)
+		 * @return
+		 */
+		public Builder withUrlSafeEncoding(boolean urlSafeEncoding) {
+			this.urlSafeEncoding = urlSafeEncoding;
+			return this;
+		}
+
+		/**
+		 * Write values in the compact binary format, which stores the value's type together with its fixed-width binary representation instead of its
+		 * String representation. This saves the String conversion and parsing for primitive values.
+		 * Values written in the text format (default) can still be read while this option is enabled, but values written in the binary format can't
+		 * be read by previous versions of this library.
+		 * @param binaryValues - Whether to write values in the binary format or not (default)
+		 * @return
+		 */
+		public Builder withBinaryValues(boolean binaryValues) {
+			this.binaryValues = binaryValues;
+			return this;
+		}
+
+		/**
+		 * Store keys as their keyed hash (truncated HMAC-SHA256, derived from the encryption password) instead of their cipher text.
+		 * Looking up a key then costs a single hash computation instead of an AES encryption, and stored keys have a fixed length of 22 characters.
+		 * As a hash can't be decrypted, the plain key is stored encrypted together with its value and restored from there by
+		 * {@link EncryptedStore#getAllKeys(boolean)} and {@link EncryptedStore#getAll()}.
+		 * <b>This option is meant for new preferences only</b>, values written without it can't be read while it's enabled and vice versa.
+		 * @param hashedKeys - Whether to store hashed keys or encrypted keys (default)
+		 * @return
+		 */
+		public Builder withHashedKeys(boolean hashedKeys) {
+			this.hashedKeys = hashedKeys;
+			return this;
+		}
+
+		/**
+		 * Specify the {@link CipherSuite} new values are encrypted with. The authenticated suites detect modified values and use a random nonce, so
+		 * the same value is encrypted differently every time. Keys are encrypted with {@link CipherSuite#AES_CBC} regardless of this setting.
+		 * Values written with any suite can still be read, but values written with an authenticated suite can't be read by previous versions of this
+		 * library or AESCrypt. Falls back to {@link CipherSuite#AES_CBC} if the given suite isn't supported on the device.
+		 * @param cipherSuite - The {@link CipherSuite} to encrypt values with, {@link CipherSuite#AES_CBC} by default
+		 * @return
+		 * @see CipherSuite#isSupported()
+		 */
+		public Builder withCipherSuite(CipherSuite cipherSuite) {
+			this.cipherSuite = cipherSuite == null ? CipherSuite.AES_CBC : cipherSuite;
+			return this;
+		}
+
+		/**
+		 * Report the duration of reads, writes, encryptions, decryptions and listener calls to the given {@link MetricsSink}. Without a sink
+		 * (default), operations aren't timed at all.
+		 * @param metricsSink - The {@link MetricsSink} to report to, e.g. a {@link MetricsRecorder}, or null to disable metrics
+		 * @return
+		 */
+		public Builder withMetrics(MetricsSink metricsSink) {
+			this.metricsSink = metricsSink;
+			return this;
+		}
+
+		/**
+		 * Print debug messages about every read and write. Keep in mind that these contain plain keys and values.
+		 * Outside of Android, they're logged with {@code java.util.logging} at level {@code FINE}, which has to be enabled to see them.
+		 * @param debugMessages - Whether to print debug messages or not (default)
+		 * @return
+		 */
+		public Builder withDebugMessages(boolean debugMessages) {
+			this.debugMessages = debugMessages;
+			return this;
+		}
+
+		/**
+		 * Build a new {@link EncryptedStore} instance with the specified configuration.
+		 * @return A new {@link EncryptedStore} instance with the specified configuration
+		 */
+		public EncryptedStore build() {
+			return new EncryptedStore(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link PreferenceStorage} which keeps all values in memory only. Nothing is persisted, so this is mainly useful for tests and for values
+ * which must not outlive the process.
+ * Listeners are notified synchronously on the thread which committed or applied the change.
+ */
+public final class InMemoryStorage implements PreferenceStorage {
+
+	private final Map<String, String> values;
+	private final List<Listener>      listeners;
+
+	/**
+	 * Create a new, empty {@link InMemoryStorage}.
+	 */
+	public InMemoryStorage() {
+		this.values = new HashMap<>();
+		this.listeners = new CopyOnWriteArrayList<>();
+	}
+
+	@Override
+	public synchronized String get(String key) {
+		return values.get(key);
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return values.containsKey(key);
+	}
+
+	@Override
+	public synchronized Map<String, ?> getAll() {
+		return new HashMap<>(values);
+	}
+
+	@Override
+	public PreferenceStorage.Editor edit() {
+		return new Editor();
+	}
+
+	@Override
+	public void registerListener(Listener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void unregisterListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	private void write(Map<String, String> changes, boolean clear) {
+		synchronized (this) {
+			if (clear) {
+				values.clear();
+			}
+			for (Map.Entry<String, String> change : changes.entrySet()) {
+				if (change.getValue() == null) {
+					values.remove(change.getKey());
+				} else {
+					values.put(change.getKey(), change.getValue());
+				}
+			}
+		}
+		if (clear) {
+			notifyListeners(null);
+		}
+		for (String key : changes.keySet()) {
+			notifyListeners(key);
+		}
+	}
+
+	private void notifyListeners(String key) {
+		for (Listener listener : listeners) {
+			listener.onStorageChanged(this, key);
+		}
+	}
+
+	private final class Editor implements PreferenceStorage.Editor {
+
+		// removed keys are mapped to null
+		private final Map<String, String> changes = new LinkedHashMap<>();
+		private       boolean             clear;
+
+		@Override
+		public synchronized PreferenceStorage.Editor put(String key, String value) {
+			changes.put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor remove(String key) {
+			changes.put(key, null);
+			return this;
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor clear() {
+			clear = true;
+			return this;
+		}
+
+		@Override
+		public boolean commit() {
+			Map<String, String> pendingChanges;
+			boolean pendingClear;
+			synchronized (this) {
+				pendingChanges = new LinkedHashMap<>(changes);
+				pendingClear = clear;
+				changes.clear();
+				clear = false;
+			}
+			write(pendingChanges, pendingClear);
+			return true;
+		}
+
+		@Override
+		public void apply() {
+			commit();
+		}
+	}
+
+}
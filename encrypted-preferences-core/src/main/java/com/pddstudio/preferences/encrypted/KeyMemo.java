@@ -0,0 +1,54 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded memo table mapping plain preference keys to their encrypted and encoded form and vice versa.
+ * Keys are always encrypted deterministically, so a once computed mapping stays valid for the lifetime of an {@link EncryptedStore} instance.
+ * Lookups don't take a lock, so any number of threads can read at once. Once the table is full, it's cleared instead of tracking the usage of
+ * every entry, as a forgotten mapping is simply computed again.
+ */
+final class KeyMemo {
+
+	private final int                               maxEntries;
+	private final ConcurrentHashMap<String, String> encryptedKeys;
+	private final ConcurrentHashMap<String, String> plainKeys;
+
+	KeyMemo(int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.encryptedKeys = new ConcurrentHashMap<>();
+		this.plainKeys = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Retrieve the memoized encrypted form of a plain key.
+	 * @param plainKey - The plain preference key
+	 * @return The encrypted key or null if it isn't memoized
+	 */
+	String encrypted(String plainKey) {
+		return encryptedKeys.get(plainKey);
+	}
+
+	/**
+	 * Retrieve the memoized plain form of an encrypted key.
+	 * @param encryptedKey - The encrypted preference key
+	 * @return The plain key or null if it isn't memoized
+	 */
+	String plain(String encryptedKey) {
+		return plainKeys.get(encryptedKey);
+	}
+
+	// writers are serialized, so the bound holds and both directions stay in sync; readers may briefly see only one of them, which is still valid
+	synchronized void put(String plainKey, String encryptedKey) {
+		if (encryptedKeys.size() >= maxEntries && !encryptedKeys.containsKey(plainKey)) {
+			encryptedKeys.clear();
+			plainKeys.clear();
+		}
+		String previous = encryptedKeys.put(plainKey, encryptedKey);
+		if (previous != null && !previous.equals(encryptedKey)) {
+			plainKeys.remove(previous);
+		}
+		plainKeys.put(encryptedKey, plainKey);
+	}
+
+}
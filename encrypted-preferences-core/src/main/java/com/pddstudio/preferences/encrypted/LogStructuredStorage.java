@@ -0,0 +1,657 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link PreferenceStorage} which appends every committed or applied batch of changes as a single record to a log file, instead of rewriting
+ * the whole file like {@code SharedPreferences} does. A write therefore only costs the size of the changed entries.
+ * <p>
+ * All values are kept in an in-memory index, which is rebuilt from the log when the storage is opened. Every record is protected by a CRC32
+ * checksum, so a record which was only partially written (e.g. because the process died) is detected and cut off during recovery, while all
+ * previously written batches stay intact. Once the log grows to more than twice the size of its live entries, it's compacted on a separate
+ * compaction thread, so writes don't have to wait for it: a snapshot of the live entries is written to a new file, and once it's complete, the
+ * records appended in the meantime are copied over on the writer thread, before the new file atomically replaces the log.
+ * <p>
+ * Log layout: a header ({@code "EPLS"} magic and {@link Format} id) followed by records of {@code [int length][int crc32][batch]}, where a batch
+ * consists of {@code [byte clear][int count]} and {@code count} entries of {@code [byte type][int keyLength][key][int valueLength][value]}
+ * (removed entries don't have a value). The type tells whether the key and value are stored as text or as raw cipher text bytes.
+ * <p>
+ * Listeners are notified synchronously on the thread which committed or applied the change.
+ */
+public final class LogStructuredStorage implements PreferenceStorage, Closeable {
+
+	/**
+	 * The format keys and values are written in.
+	 */
+	public enum Format {
+		/**
+		 * Keys and values are stored as the text they're written as.
+		 */
+		TEXT(1, false),
+		/**
+		 * Keys and values are stored as raw cipher text bytes, without the Base64 encoding and escaping applied by {@link EncryptedStore}.
+		 * This is about 25% smaller than {@link #TEXT} and avoids the escaping on load. Meant for {@link EncryptedStore} using the default
+		 * encoding.
+		 */
+		RAW(2, false),
+		/**
+		 * Like {@link #RAW}, but meant for {@link EncryptedStore} using URL-safe Base64 (see
+		 * {@link EncryptedStore.Builder#withUrlSafeEncoding(boolean)}).
+		 */
+		RAW_URL_SAFE(3, true);
+
+		private final int     id;
+		private final boolean urlSafe;
+
+		Format(int id, boolean urlSafe) {
+			this.id = id;
+			this.urlSafe = urlSafe;
+		}
+
+		private static Format forId(int id) {
+			for (Format format : values()) {
+				if (format.id == id) {
+					return format;
+				}
+			}
+			return null;
+		}
+
+		private String toText(byte[] raw) {
+			String base64 = Base64Codec.encode(raw, urlSafe);
+			return urlSafe ? base64 : CharsetEncoding.encode(base64);
+		}
+
+		private byte[] toRaw(String text) {
+			if (this == TEXT) {
+				return null;
+			}
+			byte[] raw = Base64Codec.decode(urlSafe ? text : CharsetEncoding.decode(text), urlSafe);
+			// only store values as raw bytes if they are restored exactly as they were written, anything else is stored as text
+			return raw != null && toText(raw).equals(text) ? raw : null;
+		}
+	}
+
+	private static final int     MAGIC                = 0x45504C53;
+	private static final int     HEADER_LENGTH        = 8;
+	private static final int     RECORD_HEADER_LENGTH = 8;
+	private static final byte    ENTRY_PUT            = 1;
+	private static final byte    ENTRY_REMOVE         = 2;
+	private static final byte    RAW_KEY              = 0x10;
+	private static final byte    RAW_VALUE            = 0x20;
+	private static final byte    OPERATION_MASK       = 0x0F;
+	private static final long    MIN_COMPACTION_SIZE  = 64 * 1024;
+	private static final String  COMPACTION_SUFFIX    = ".compact";
+	private static final Charset CHARSET              = Charset.forName("UTF-8");
+
+	private static ExecutorService writerExecutor;
+	private static ExecutorService compactionExecutor;
+
+	private final File                file;
+	private final File                compactionFile;
+	private final Format              format;
+	// values are either Strings or raw cipher text bytes, which are only converted to text when they're read
+	private final Map<String, Object> values;
+	private final List<Listener>      listeners;
+	private       long                liveBytes;
+	private       boolean             closed;
+	// only accessed on the writer thread once the storage is opened
+	private       FileChannel         channel;
+	private       long                fileSize;
+	// the running compaction, which replaces the log on the writer thread once its snapshot is written
+	private       Future<?>           compaction;
+
+	/**
+	 * Opens the log at the given location in the {@link Format#TEXT} format, or creates a new one if it doesn't exist yet.
+	 * @param file - The log file
+	 * @see #LogStructuredStorage(File, Format)
+	 */
+	public LogStructuredStorage(File file) {
+		this(file, Format.TEXT);
+	}
+
+	/**
+	 * Opens the log at the given location, or creates a new one if it doesn't exist yet. Incomplete records at the end of the log are cut off.
+	 * A log written in another {@link Format} is converted once while it's opened.
+	 * This reads the whole log, so consider opening it on a background thread.
+	 * @param file - The log file
+	 * @param format - The {@link Format} to write keys and values in
+	 */
+	public LogStructuredStorage(File file, Format format) {
+		this.file = file;
+		this.compactionFile = new File(file.getPath() + COMPACTION_SUFFIX);
+		this.format = format;
+		this.values = new HashMap<>();
+		this.listeners = new CopyOnWriteArrayList<>();
+		try {
+			open();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to open LogStructuredStorage at " + file, e);
+		}
+	}
+
+	private static synchronized ExecutorService writerExecutor() {
+		if (writerExecutor == null) {
+			writerExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("EncryptedPreferences-log"));
+		}
+		return writerExecutor;
+	}
+
+	private static synchronized ExecutorService compactionExecutor() {
+		if (compactionExecutor == null) {
+			compactionExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("EncryptedPreferences-log-compaction"));
+		}
+		return compactionExecutor;
+	}
+
+	private void open() throws IOException {
+		// a leftover compaction file was never renamed, so the log itself is still complete
+		if (compactionFile.exists() && !compactionFile.delete()) {
+			throw new IOException("Unable to delete incomplete compaction file " + compactionFile);
+		}
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		long size = channel.size();
+		if (size < HEADER_LENGTH) {
+			channel.truncate(0);
+			writeFully(channel, header(), 0);
+			channel.force(true);
+			fileSize = HEADER_LENGTH;
+			return;
+		}
+		if (size > Integer.MAX_VALUE) {
+			channel.close();
+			throw new IOException(file + " is too large to be read");
+		}
+		// read into the heap instead of mapping the file, a mapping is only released once the buffer is garbage collected
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		readFully(channel, buffer);
+		buffer.flip();
+		Format fileFormat = buffer.getInt() == MAGIC ? Format.forId(buffer.getInt()) : null;
+		if (fileFormat == null) {
+			channel.close();
+			throw new IOException(file + " isn't a log written by LogStructuredStorage");
+		}
+		long validSize = HEADER_LENGTH;
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= RECORD_HEADER_LENGTH) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				break;
+			}
+			byte[] record = new byte[length];
+			buffer.get(record);
+			crc.reset();
+			crc.update(record, 0, length);
+			if ((int) crc.getValue() != checksum || !replay(ByteBuffer.wrap(record), fileFormat)) {
+				break;
+			}
+			validSize = buffer.position();
+		}
+		if (validSize < size) {
+			// cut off the incomplete record, so new records are appended right after the last complete one
+			channel.truncate(validSize);
+			channel.force(true);
+		}
+		fileSize = validSize;
+		if (fileFormat != format) {
+			// raw values can only be converted to text with the format they were written in
+			for (Map.Entry<String, Object> value : values.entrySet()) {
+				if (value.getValue() instanceof byte[]) {
+					value.setValue(fileFormat.toText((byte[]) value.getValue()));
+				}
+			}
+			compact();
+		}
+	}
+
+	private boolean replay(ByteBuffer record, Format fileFormat) {
+		try {
+			Map<String, Object> changes = new LinkedHashMap<>();
+			boolean clear = record.get() != 0;
+			int count = record.getInt();
+			for (int i = 0; i < count; i++) {
+				byte type = record.get();
+				byte[] keyBytes = readBytes(record);
+				String key = (type & RAW_KEY) != 0 ? fileFormat.toText(keyBytes) : new String(keyBytes, CHARSET);
+				Object value = null;
+				if ((type & OPERATION_MASK) == ENTRY_PUT) {
+					byte[] valueBytes = readBytes(record);
+					value = (type & RAW_VALUE) != 0 ? valueBytes : new String(valueBytes, CHARSET);
+				}
+				changes.put(key, value);
+			}
+			if (clear) {
+				values.clear();
+				liveBytes = 0;
+			}
+			applyToIndex(changes);
+			return true;
+		} catch (RuntimeException e) {
+			// a record with a valid checksum but an invalid layout, treat it like an incomplete one
+			return false;
+		}
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private ByteBuffer header() {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(MAGIC).putInt(format.id).flip();
+		return header;
+	}
+
+	private void applyToIndex(Map<String, ?> changes) {
+		for (Map.Entry<String, ?> change : changes.entrySet()) {
+			Object oldValue = change.getValue() == null ? values.remove(change.getKey()) : values.put(change.getKey(), change.getValue());
+			if (oldValue != null) {
+				liveBytes -= entrySize(change.getKey(), oldValue);
+			}
+			if (change.getValue() != null) {
+				liveBytes += entrySize(change.getKey(), change.getValue());
+			}
+		}
+	}
+
+	private static long entrySize(String key, Object value) {
+		return 9 + utf8Length(key) + (value instanceof byte[] ? ((byte[]) value).length : utf8Length((String) value));
+	}
+
+	private static int utf8Length(String text) {
+		// counted instead of encoded, keys and values written by EncryptedPreferences are plain ASCII anyway
+		int length = text.length();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				// a surrogate pair is encoded as 4 bytes
+				length += 1;
+			} else if (c >= 0x800) {
+				length += 2;
+			} else if (c >= 0x80) {
+				length += 1;
+			}
+		}
+		return length;
+	}
+
+	private byte[] encodeRecord(Map<String, ?> changes, boolean clear) {
+		int length = 5;
+		int count = changes.size();
+		byte[] types = new byte[count];
+		byte[][] keys = new byte[count][];
+		byte[][] valueBytes = new byte[count][];
+		int i = 0;
+		for (Map.Entry<String, ?> change : changes.entrySet()) {
+			byte type = change.getValue() == null ? ENTRY_REMOVE : ENTRY_PUT;
+			byte[] key = format.toRaw(change.getKey());
+			if (key != null) {
+				type |= RAW_KEY;
+			} else {
+				key = change.getKey().getBytes(CHARSET);
+			}
+			byte[] value = null;
+			if (change.getValue() instanceof byte[]) {
+				// raw values in the index are always in this storage's format
+				value = (byte[]) change.getValue();
+				type |= RAW_VALUE;
+			} else if (change.getValue() != null) {
+				value = format.toRaw((String) change.getValue());
+				if (value != null) {
+					type |= RAW_VALUE;
+				} else {
+					value = ((String) change.getValue()).getBytes(CHARSET);
+				}
+			}
+			types[i] = type;
+			keys[i] = key;
+			valueBytes[i] = value;
+			length += 5 + key.length + (value == null ? 0 : 4 + value.length);
+			i++;
+		}
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+		record.position(RECORD_HEADER_LENGTH);
+		record.put((byte) (clear ? 1 : 0)).putInt(count);
+		for (i = 0; i < count; i++) {
+			record.put(types[i]);
+			record.putInt(keys[i].length).put(keys[i]);
+			if (valueBytes[i] != null) {
+				record.putInt(valueBytes[i].length).put(valueBytes[i]);
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER_LENGTH, length);
+		record.putInt(0, length).putInt(4, (int) crc.getValue());
+		return record.array();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		long position = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of log");
+			}
+			position += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private boolean append(byte[] record, boolean sync) {
+		try {
+			writeFully(channel, ByteBuffer.wrap(record), fileSize);
+			fileSize += record.length;
+			if (sync) {
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		scheduleCompaction();
+		return true;
+	}
+
+	private void scheduleCompaction() {
+		if (compaction != null || fileSize < MIN_COMPACTION_SIZE || !needsCompaction()) {
+			return;
+		}
+		final Map<String, Object> liveValues = snapshot();
+		// every record up to this size is contained in the snapshot, all later ones are copied over before the log is replaced
+		final long compactedSize = fileSize;
+		compaction = compactionExecutor().submit(new Runnable() {
+			@Override
+			public void run() {
+				boolean written = false;
+				try {
+					writeCompactionFile(liveValues);
+					written = true;
+				} catch (IOException e) {
+					// the log is just compacted again after the next write
+					e.printStackTrace();
+				} finally {
+					finishCompaction(written, compactedSize);
+				}
+			}
+		});
+	}
+
+	private synchronized boolean needsCompaction() {
+		return fileSize > 2 * (HEADER_LENGTH + liveBytes);
+	}
+
+	private void finishCompaction(final boolean written, final long compactedSize) {
+		writerExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				compaction = null;
+				if (!channel.isOpen()) {
+					// closed in the meantime
+					compactionFile.delete();
+					return;
+				}
+				try {
+					if (written) {
+						replaceLog(compactedSize);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				// the records appended in the meantime might be enough for the next compaction already
+				scheduleCompaction();
+			}
+		});
+	}
+
+	private void compact() throws IOException {
+		writeCompactionFile(snapshot());
+		replaceLog(fileSize);
+	}
+
+	private synchronized Map<String, Object> snapshot() {
+		return new HashMap<>(values);
+	}
+
+	private void writeCompactionFile(Map<String, Object> liveValues) throws IOException {
+		// changes which are staged but not written yet are contained in the snapshot and appended to the compacted log once more, which is harmless
+		byte[] record = encodeRecord(liveValues, true);
+		FileChannel compactionChannel = new RandomAccessFile(compactionFile, "rw").getChannel();
+		try {
+			compactionChannel.truncate(0);
+			writeFully(compactionChannel, header(), 0);
+			writeFully(compactionChannel, ByteBuffer.wrap(record), HEADER_LENGTH);
+			compactionChannel.force(true);
+		} finally {
+			compactionChannel.close();
+		}
+	}
+
+	private void replaceLog(long compactedSize) throws IOException {
+		if (compactedSize < fileSize) {
+			FileChannel compactionChannel = new RandomAccessFile(compactionFile, "rw").getChannel();
+			try {
+				long position = compactedSize;
+				while (position < fileSize) {
+					position += channel.transferTo(position, fileSize - position, compactionChannel.position(compactionChannel.size()));
+				}
+				compactionChannel.force(true);
+			} finally {
+				compactionChannel.close();
+			}
+		}
+		channel.close();
+		if (!compactionFile.renameTo(file)) {
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			throw new IOException("Unable to replace " + file + " with its compacted log");
+		}
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		fileSize = channel.size();
+	}
+
+	private Future<Boolean> write(Map<String, String> changes, boolean clear, final boolean sync) {
+		Future<Boolean> future;
+		synchronized (this) {
+			checkNotClosed();
+			if (clear) {
+				values.clear();
+				liveBytes = 0;
+			}
+			applyToIndex(changes);
+			final byte[] record = encodeRecord(changes, clear);
+			// records are enqueued while the index is locked, so they're appended in the same order as they were applied to the index
+			future = writerExecutor().submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return append(record, sync);
+				}
+			});
+		}
+		if (clear) {
+			notifyListeners(null);
+		}
+		for (String key : changes.keySet()) {
+			notifyListeners(key);
+		}
+		return future;
+	}
+
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("LogStructuredStorage at " + file + " is already closed");
+		}
+	}
+
+	private void notifyListeners(String key) {
+		for (Listener listener : listeners) {
+			listener.onStorageChanged(this, key);
+		}
+	}
+
+	private String toText(Object value) {
+		return value instanceof byte[] ? format.toText((byte[]) value) : (String) value;
+	}
+
+	@Override
+	public String get(String key) {
+		Object value;
+		synchronized (this) {
+			value = values.get(key);
+		}
+		return toText(value);
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return values.containsKey(key);
+	}
+
+	@Override
+	public Map<String, ?> getAll() {
+		Map<String, Object> snapshot;
+		synchronized (this) {
+			snapshot = new HashMap<>(values);
+		}
+		for (Map.Entry<String, Object> value : snapshot.entrySet()) {
+			value.setValue(toText(value.getValue()));
+		}
+		return snapshot;
+	}
+
+	@Override
+	public synchronized PreferenceStorage.Editor edit() {
+		checkNotClosed();
+		return new Editor();
+	}
+
+	@Override
+	public void registerListener(Listener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void unregisterListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Waits for all pending writes and compactions and closes the log. The storage can still be read afterwards, but {@link #edit()} and
+	 * writing an editor which was created before throw an {@link IllegalStateException}.
+	 * @throws IOException if the log couldn't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			// records are enqueued while the index is locked, so no record can be enqueued after the log was closed
+			closed = true;
+		}
+		Callable<Future<?>> closeTask = new Callable<Future<?>>() {
+			@Override
+			public Future<?> call() throws Exception {
+				if (compaction != null) {
+					return compaction;
+				}
+				channel.close();
+				return null;
+			}
+		};
+		try {
+			// a finished compaction replaces the log on the writer thread, before the close task is run again
+			Future<?> pendingCompaction;
+			while ((pendingCompaction = writerExecutor().submit(closeTask).get()) != null) {
+				pendingCompaction.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing " + file);
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to close " + file, e.getCause());
+		}
+	}
+
+	private final class Editor implements PreferenceStorage.Editor {
+
+		// removed keys are mapped to null
+		private final Map<String, String> changes = new LinkedHashMap<>();
+		private       boolean             clear;
+
+		@Override
+		public synchronized PreferenceStorage.Editor put(String key, String value) {
+			changes.put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor remove(String key) {
+			changes.put(key, null);
+			return this;
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor clear() {
+			clear = true;
+			return this;
+		}
+
+		private Future<Boolean> write(boolean sync) {
+			Map<String, String> pendingChanges;
+			boolean pendingClear;
+			synchronized (this) {
+				pendingChanges = new LinkedHashMap<>(changes);
+				pendingClear = clear;
+				changes.clear();
+				clear = false;
+			}
+			return LogStructuredStorage.this.write(pendingChanges, pendingClear, sync);
+		}
+
+		@Override
+		public boolean commit() {
+			Future<Boolean> future = write(true);
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				return false;
+			}
+		}
+
+		@Override
+		public void apply() {
+			write(false);
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Lock-free debug logger. Messages are only assembled when debug messages are enabled, so callers should pass the message parts as arguments
+ * (referenced by {@code {}} placeholders) instead of concatenating them up front.
+ */
+final class Logger {
+
+	/**
+	 * Interface definition for the output of debug messages.
+	 */
+	interface Printer {
+
+		void print(String tag, String message);
+	}
+
+	private static final String PLACEHOLDER = "{}";
+
+	// a library shouldn't write to System.out, java.util.logging hides FINE messages unless the application configures it to show them
+	private static volatile Printer printer = new Printer() {
+		@Override
+		public void print(String tag, String message) {
+			java.util.logging.Logger.getLogger(tag).fine(message);
+		}
+	};
+
+	private final String  tag;
+	private final boolean enabled;
+
+	Logger(String tag, boolean enabled) {
+		this.tag = tag;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Whether debug messages are printed or not. Use this to guard the computation of arguments which aren't available anyway.
+	 * @return True if debug messages are printed, otherwise false.
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Replaces the output of all debug messages, which are logged with {@code java.util.logging} at level {@code FINE} by default.
+	 * @param printer - The {@link Printer} to print debug messages with
+	 */
+	static void setPrinter(Printer printer) {
+		Logger.printer = printer;
+	}
+
+	void d(String message) {
+		if (enabled) {
+			printer.print(tag, message);
+		}
+	}
+
+	void d(String message, Object arg) {
+		if (enabled) {
+			printer.print(tag, format(message, arg));
+		}
+	}
+
+	void d(String message, Object arg1, Object arg2) {
+		if (enabled) {
+			printer.print(tag, format(message, arg1, arg2));
+		}
+	}
+
+	void d(String message, Object arg1, Object arg2, Object arg3) {
+		if (enabled) {
+			printer.print(tag, format(message, arg1, arg2, arg3));
+		}
+	}
+
+	void d(String message, Object arg1, Object arg2, Object arg3, Object arg4) {
+		if (enabled) {
+			printer.print(tag, format(message, arg1, arg2, arg3, arg4));
+		}
+	}
+
+	private static String format(String message, Object... args) {
+		StringBuilder builder = new StringBuilder(message.length() + 32 * args.length);
+		int start = 0;
+		for (Object arg : args) {
+			int index = message.indexOf(PLACEHOLDER, start);
+			if (index < 0) {
+				break;
+			}
+			builder.append(message, start, index).append(arg);
+			start = index + PLACEHOLDER.length();
+		}
+		return builder.append(message, start, message.length()).toString();
+	}
+
+}
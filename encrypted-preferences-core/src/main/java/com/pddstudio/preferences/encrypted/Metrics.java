@@ -0,0 +1,39 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Times operations for an optional {@link MetricsSink}. Without a sink, {@link #start()} doesn't even read the clock, so the timing calls can stay
+ * on the hot paths.
+ */
+final class Metrics {
+
+	/**
+	 * The start time of an operation which isn't recorded.
+	 */
+	static final long UNTIMED = -1;
+
+	private final MetricsSink sink;
+
+	Metrics(MetricsSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Starts timing an operation.
+	 * @return The start time to pass to {@link #record(MetricsSink.Operation, long)}, or {@link #UNTIMED} if no sink is configured
+	 */
+	long start() {
+		return sink == null ? UNTIMED : System.nanoTime();
+	}
+
+	/**
+	 * Records the duration of an operation started at the given time.
+	 * @param operation - The {@link MetricsSink.Operation} which finished
+	 * @param startTime - The start time returned by {@link #start()}, nothing is recorded for {@link #UNTIMED}
+	 */
+	void record(MetricsSink.Operation operation, long startTime) {
+		if (startTime != UNTIMED) {
+			sink.record(operation, System.nanoTime() - startTime);
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, in-memory {@link MetricsSink}, which counts every operation and keeps a latency histogram per operation.
+ * The histograms use power of two buckets: bucket {@code i} holds all durations between {@code 2^(i-1)} and {@code 2^i - 1} nanoseconds, so
+ * percentiles are accurate to a factor of two. Recording a duration costs a few atomic additions and never blocks.
+ * <p>
+ * Call {@link #snapshot()} to read the recorded values, or {@link #reset()} to read and clear them at once, e.g. when reporting them periodically.
+ */
+public final class MetricsRecorder implements MetricsSink {
+
+	// the last bucket holds everything from about 4.6 minutes on
+	private static final int BUCKET_COUNT    = 40;
+	private static final int OPERATION_COUNT = Operation.values().length;
+
+	private final AtomicLongArray buckets;
+	private final AtomicLongArray totalNanos;
+	private final AtomicLongArray maxNanos;
+
+	public MetricsRecorder() {
+		this.buckets = new AtomicLongArray(OPERATION_COUNT * BUCKET_COUNT);
+		this.totalNanos = new AtomicLongArray(OPERATION_COUNT);
+		this.maxNanos = new AtomicLongArray(OPERATION_COUNT);
+	}
+
+	@Override
+	public void record(Operation operation, long durationNanos) {
+		long duration = Math.max(durationNanos, 0);
+		int index = operation.ordinal();
+		buckets.incrementAndGet(index * BUCKET_COUNT + bucketOf(duration));
+		totalNanos.addAndGet(index, duration);
+		long max = maxNanos.get(index);
+		while (duration > max && !maxNanos.compareAndSet(index, max, duration)) {
+			max = maxNanos.get(index);
+		}
+	}
+
+	/**
+	 * Reads the values recorded so far, without clearing them.
+	 * @return A {@link Snapshot} of the recorded values
+	 */
+	public Snapshot snapshot() {
+		return read(false);
+	}
+
+	/**
+	 * Reads and clears the values recorded so far. Operations finishing while the values are cleared are either contained in the returned
+	 * {@link Snapshot} or recorded afterwards, but a single one might be split between both (e.g. its count before and its duration after).
+	 * @return A {@link Snapshot} of the cleared values
+	 */
+	public Snapshot reset() {
+		return read(true);
+	}
+
+	private Snapshot read(boolean clear) {
+		long[] bucketCounts = new long[buckets.length()];
+		long[] totals = new long[OPERATION_COUNT];
+		long[] maxima = new long[OPERATION_COUNT];
+		for (int i = 0; i < bucketCounts.length; i++) {
+			bucketCounts[i] = clear ? buckets.getAndSet(i, 0) : buckets.get(i);
+		}
+		for (int i = 0; i < OPERATION_COUNT; i++) {
+			totals[i] = clear ? totalNanos.getAndSet(i, 0) : totalNanos.get(i);
+			maxima[i] = clear ? maxNanos.getAndSet(i, 0) : maxNanos.get(i);
+		}
+		return new Snapshot(bucketCounts, totals, maxima);
+	}
+
+	private static int bucketOf(long durationNanos) {
+		// 0 for 0ns, 1 for 1ns, 2 for 2-3ns, 3 for 4-7ns, ...
+		return Math.min(64 - Long.numberOfLeadingZeros(durationNanos), BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * The upper bound of a histogram bucket.
+	 * @param bucket - The index of the bucket
+	 * @return The longest duration in nanoseconds which is counted in the given bucket, or {@link Long#MAX_VALUE} for the last bucket
+	 */
+	public static long bucketUpperBoundNanos(int bucket) {
+		return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	/**
+	 * The values recorded by a {@link MetricsRecorder} at a point in time.
+	 */
+	public static final class Snapshot {
+
+		private final long[] buckets;
+		private final long[] totalNanos;
+		private final long[] maxNanos;
+
+		private Snapshot(long[] buckets, long[] totalNanos, long[] maxNanos) {
+			this.buckets = buckets;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+		}
+
+		/**
+		 * @param operation - The {@link Operation} to read
+		 * @return The number of recorded operations.
+		 */
+		public long count(Operation operation) {
+			long count = 0;
+			int offset = operation.ordinal() * BUCKET_COUNT;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				count += buckets[offset + i];
+			}
+			return count;
+		}
+
+		/**
+		 * @param operation - The {@link Operation} to read
+		 * @return The summed up duration of all recorded operations in nanoseconds.
+		 */
+		public long totalNanos(Operation operation) {
+			return totalNanos[operation.ordinal()];
+		}
+
+		/**
+		 * @param operation - The {@link Operation} to read
+		 * @return The longest recorded duration in nanoseconds, or 0 if nothing was recorded.
+		 */
+		public long maxNanos(Operation operation) {
+			return maxNanos[operation.ordinal()];
+		}
+
+		/**
+		 * @param operation - The {@link Operation} to read
+		 * @return The mean duration in nanoseconds, or 0 if nothing was recorded.
+		 */
+		public long meanNanos(Operation operation) {
+			long count = count(operation);
+			return count == 0 ? 0 : totalNanos(operation) / count;
+		}
+
+		/**
+		 * Estimates a percentile of the recorded durations from the histogram.
+		 * @param operation - The {@link Operation} to read
+		 * @param percentile - The percentile between 0 and 100, e.g. 99 for the 99th percentile
+		 * @return The upper bound of the bucket containing the percentile (but never more than the longest recorded duration) in nanoseconds,
+		 * or 0 if nothing was recorded.
+		 */
+		public long percentileNanos(Operation operation, double percentile) {
+			long count = count(operation);
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100));
+			int offset = operation.ordinal() * BUCKET_COUNT;
+			long seen = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				seen += buckets[offset + i];
+				if (seen >= rank) {
+					return Math.min(bucketUpperBoundNanos(i), maxNanos(operation));
+				}
+			}
+			return maxNanos(operation);
+		}
+
+		/**
+		 * @param operation - The {@link Operation} to read
+		 * @return A copy of the histogram, see {@link MetricsRecorder#bucketUpperBoundNanos(int)} for the bounds of its buckets.
+		 */
+		public long[] histogram(Operation operation) {
+			long[] histogram = new long[BUCKET_COUNT];
+			System.arraycopy(buckets, operation.ordinal() * BUCKET_COUNT, histogram, 0, BUCKET_COUNT);
+			return histogram;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("Snapshot{");
+			boolean first = true;
+			for (Operation operation : Operation.values()) {
+				long count = count(operation);
+				if (count == 0) {
+					continue;
+				}
+				if (!first) {
+					builder.append(", ");
+				}
+				first = false;
+				builder.append(operation).append("={count=").append(count).append(", mean=").append(meanNanos(operation)).append("ns, p99=")
+					   .append(percentileNanos(operation, 99)).append("ns, max=").append(maxNanos(operation)).append("ns}");
+			}
+			return builder.append('}').toString();
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Receives the duration of every timed operation of an {@link EncryptedStore}, configured with {@link EncryptedStore.Builder#withMetrics(MetricsSink)}.
+ * It's called on the thread which performed the operation, right after it finished, so implementations must be thread-safe and should return
+ * quickly. {@link MetricsRecorder} is a ready to use in-memory implementation.
+ */
+public interface MetricsSink {
+
+	/**
+	 * The operations which are timed.
+	 */
+	enum Operation {
+		/**
+		 * A single value read which was answered from the value cache or not yet written changes, without decrypting anything.
+		 */
+		GET_HIT,
+		/**
+		 * A single value read which had to read and decrypt the stored value.
+		 */
+		GET_MISS,
+		/**
+		 * A single value read of a preference which doesn't exist, so the default value was returned.
+		 */
+		GET_DEFAULT,
+		/**
+		 * A value put into or removed from an editor.
+		 */
+		PUT,
+		/**
+		 * An {@code apply()} of an editor. Only covers the calling thread, the values are encrypted and written on a background thread afterwards.
+		 */
+		APPLY,
+		/**
+		 * A {@code commit()} of an editor, including the encryption and the write.
+		 */
+		COMMIT,
+		/**
+		 * A check whether a preference exists.
+		 */
+		CONTAINS,
+		/**
+		 * The encryption (or hashing) of a key which wasn't encrypted before.
+		 */
+		ENCRYPT_KEY,
+		/**
+		 * The decryption of a stored value.
+		 */
+		DECRYPT_VALUE,
+		/**
+		 * A stored key or value which couldn't be decrypted, e.g. because it was written with another password or modified.
+		 */
+		DECRYPT_FAILURE,
+		/**
+		 * The delivery of a change to a registered listener, including the time spent in the listener.
+		 */
+		LISTENER_DISPATCH
+	}
+
+	/**
+	 * Called once an operation finished.
+	 * @param operation The {@link Operation} which finished.
+	 * @param durationNanos The duration of the operation in nanoseconds.
+	 */
+	void record(Operation operation, long durationNanos);
+}
@@ -0,0 +1,229 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the plain values of applied, but not yet encrypted and written, editor changes in memory.
+ * {@link EncryptedStore.Editor#apply()} stages its changes here and encrypts them on the writer thread afterwards. Until a staged batch
+ * is written, reads are answered from this overlay, which gives the same in-memory visibility as {@code SharedPreferences.Editor#apply()}.
+ * There's one overlay per {@link PreferenceStorage}, shared by all {@link EncryptedStore} reading it. Changes are keyed
+ * by their encrypted key, so instances using another password don't see each other's changes.
+ * Batches are written one after another on the overlay's own writer thread, so they complete in the order they were staged, while writes of
+ * other storages don't have to wait for them.
+ */
+final class PendingWrites {
+
+	/**
+	 * Marker for values which are removed by a pending batch.
+	 */
+	static final Object REMOVED = new Object();
+
+	private static final Map<PreferenceStorage, PendingWrites> INSTANCES          = new WeakHashMap<>();
+	private static final ThreadFactory                         WRITER_THREADS     = new DaemonThreadFactory("EncryptedPreferences-writer");
+	// the overlay whose batches the current thread writes, if any
+	private static final ThreadLocal<PendingWrites>            CURRENT_WRITER     = new ThreadLocal<>();
+	private static final int                                   KEEP_ALIVE_SECONDS = 30;
+
+	private final    ExecutorService    writerExecutor;
+	private final    Map<String, Entry> entries = new HashMap<>();
+	private          long               nextBatchId;
+	private          long               clearBatchId = -1;
+	// published after every change of the overlay, so readers can skip the lock as long as nothing is pending
+	private volatile boolean            empty        = true;
+
+	private PendingWrites() {
+		// threads are only started for the first task and released again when they're idle, so an executor per storage is cheap
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+															 new WriterThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		this.writerExecutor = executor;
+	}
+
+	/**
+	 * Retrieve the overlay of the given {@link PreferenceStorage}.
+	 * @param storage - The {@link PreferenceStorage}, storages which are equal share the same overlay
+	 * @return The {@link PendingWrites} shared by all readers of the given storage
+	 */
+	static synchronized PendingWrites forStorage(PreferenceStorage storage) {
+		PendingWrites pendingWrites = INSTANCES.get(storage);
+		if (pendingWrites == null) {
+			pendingWrites = new PendingWrites();
+			INSTANCES.put(storage, pendingWrites);
+		}
+		return pendingWrites;
+	}
+
+	/**
+	 * Retrieve the writer executor of this overlay, which encrypts and writes staged batches in the order they were submitted.
+	 * @return The single-threaded {@linkplain ExecutorService} of this overlay
+	 */
+	ExecutorService writerExecutor() {
+		return writerExecutor;
+	}
+
+	/**
+	 * Whether the calling thread is the writer thread of this overlay, e.g. because its storage notifies its listeners on the thread which
+	 * committed a batch. Tasks submitted to the writer from there would wait for the task which is currently running, so they have to be run
+	 * right away instead.
+	 * @return True if called on this overlay's writer thread, otherwise false.
+	 */
+	boolean isWriterThread() {
+		return CURRENT_WRITER.get() == this;
+	}
+
+	/**
+	 * Whether the calling thread is the writer thread of any overlay.
+	 * @return True if called on a writer thread, otherwise false.
+	 */
+	static boolean isAnyWriterThread() {
+		return CURRENT_WRITER.get() != null;
+	}
+
+	/**
+	 * Stages a batch of changes.
+	 * @param changes - The encrypted keys mapped to their new plain values or {@link #REMOVED}
+	 * @param plainKeys - The encrypted keys of all changes mapped to their plain keys
+	 * @param clear - Whether the batch clears all existing values before applying its changes
+	 * @return The batch, which must be passed to {@link #complete(Batch)} once it's written
+	 */
+	synchronized Batch stage(Map<String, Object> changes, Map<String, String> plainKeys, boolean clear) {
+		Batch batch = new Batch(nextBatchId++, changes, plainKeys, clear);
+		if (clear) {
+			// values staged by earlier batches are going to be cleared by this one anyway
+			entries.clear();
+			clearBatchId = batch.id;
+		}
+		for (Map.Entry<String, Object> change : changes.entrySet()) {
+			entries.put(change.getKey(), new Entry(change.getValue(), plainKeys.get(change.getKey()), batch.id));
+		}
+		empty = entries.isEmpty() && clearBatchId < 0;
+		return batch;
+	}
+
+	/**
+	 * Removes the changes of a written batch, unless they were overwritten by a later batch.
+	 * @param batch - The written batch
+	 */
+	synchronized void complete(Batch batch) {
+		for (String key : batch.changes.keySet()) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.batchId == batch.id) {
+				entries.remove(key);
+			}
+		}
+		if (clearBatchId == batch.id) {
+			clearBatchId = -1;
+		}
+		empty = entries.isEmpty() && clearBatchId < 0;
+	}
+
+	/**
+	 * Whether there are any pending changes. Lets readers skip the key encryption and the lock needed for {@link #lookup(String)}.
+	 * Doesn't lock, a batch is written to the storage before it's removed from the overlay, so a reader seeing no pending changes sees its values.
+	 * @return True if no batch is pending, otherwise false.
+	 */
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * Retrieve the pending value of the given key.
+	 * @param encryptedKey - The encrypted preference key
+	 * @return The pending value, {@link #REMOVED} if the key is removed by a pending batch or null if there's no pending change for this key
+	 */
+	synchronized Object lookup(String encryptedKey) {
+		Entry entry = entries.get(encryptedKey);
+		if (entry != null) {
+			return entry.value;
+		}
+		return clearBatchId < 0 ? null : REMOVED;
+	}
+
+	/**
+	 * Retrieve a copy of all pending changes. Must be taken before the underlying preferences are read, so changes which are written in between
+	 * are contained in either of both.
+	 * @return A {@link Snapshot} of all pending changes
+	 */
+	Snapshot snapshot() {
+		if (empty) {
+			return new Snapshot(false, Collections.<String, Object>emptyMap(), Collections.<String, String>emptyMap());
+		}
+		synchronized (this) {
+			Map<String, Object> values = new HashMap<>(entries.size() * 4 / 3 + 1);
+			Map<String, String> plainKeys = new HashMap<>(entries.size() * 4 / 3 + 1);
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				values.put(entry.getKey(), entry.getValue().value);
+				plainKeys.put(entry.getKey(), entry.getValue().plainKey);
+			}
+			return new Snapshot(clearBatchId >= 0, values, plainKeys);
+		}
+	}
+
+	static final class Snapshot {
+
+		final boolean             clearPending;
+		final Map<String, Object> values;
+		final Map<String, String> plainKeys;
+
+		private Snapshot(boolean clearPending, Map<String, Object> values, Map<String, String> plainKeys) {
+			this.clearPending = clearPending;
+			this.values = values;
+			this.plainKeys = plainKeys;
+		}
+
+		boolean isEmpty() {
+			return !clearPending && values.isEmpty();
+		}
+	}
+
+	static final class Batch {
+
+		private final long                id;
+		final         Map<String, Object> changes;
+		final         Map<String, String> plainKeys;
+		final         boolean             clear;
+
+		private Batch(long id, Map<String, Object> changes, Map<String, String> plainKeys, boolean clear) {
+			this.id = id;
+			this.changes = changes;
+			this.plainKeys = plainKeys;
+			this.clear = clear;
+		}
+	}
+
+	private final class WriterThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			return WRITER_THREADS.newThread(new Runnable() {
+				@Override
+				public void run() {
+					CURRENT_WRITER.set(PendingWrites.this);
+					runnable.run();
+				}
+			});
+		}
+	}
+
+	private static final class Entry {
+
+		private final Object value;
+		private final String plainKey;
+		private final long   batchId;
+
+		private Entry(Object value, String plainKey, long batchId) {
+			this.value = value;
+			this.plainKey = plainKey;
+			this.batchId = batchId;
+		}
+	}
+
+}
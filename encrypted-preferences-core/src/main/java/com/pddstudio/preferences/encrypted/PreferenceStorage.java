@@ -0,0 +1,107 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.Map;
+
+/**
+ * The storage backend of an {@link EncryptedStore} instance. It only ever sees encrypted keys and values, so implementations don't have to
+ * care about encryption at all.
+ * By default {@code EncryptedPreferences} stores its values in {@code SharedPreferences} (see {@code SharedPreferencesStorage}),
+ * another backend can be configured with {@link EncryptedStore.Builder#withStorage(PreferenceStorage)}.
+ * Implementations must be thread-safe.
+ */
+public interface PreferenceStorage {
+
+	/**
+	 * Interface definition for a callback to be invoked when a stored value is changed.
+	 */
+	interface Listener {
+
+		/**
+		 * Called when a stored value is changed, added, or removed.
+		 * @param storage The {@link PreferenceStorage} that received the change.
+		 * @param key The (encrypted) key of the value that was changed, added, or removed, or null if all values were removed.
+		 */
+		void onStorageChanged(PreferenceStorage storage, String key);
+	}
+
+	/**
+	 * Interface used for modifying stored values. All changes are batched and written atomically once {@link #commit()} or {@link #apply()} is
+	 * called.
+	 */
+	interface Editor {
+
+		/**
+		 * Set a raw value, to be written once {@link #commit()} or {@link #apply()} is called.
+		 * @param key - The (encrypted) key of the value
+		 * @param value - The raw (encrypted) value
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		Editor put(String key, String value);
+
+		/**
+		 * Mark a value to be removed once {@link #commit()} or {@link #apply()} is called.
+		 * @param key - The (encrypted) key of the value to remove
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		Editor remove(String key);
+
+		/**
+		 * Mark all stored values to be removed. Like with {@code SharedPreferences.Editor#clear()}, this is done before any
+		 * other change of this editor is written.
+		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
+		 */
+		Editor clear();
+
+		/**
+		 * Writes all changes synchronously.
+		 * @return Returns true if the changes were successfully written to persistent storage.
+		 */
+		boolean commit();
+
+		/**
+		 * Writes all changes. Implementations may write them asynchronously, but the changes must be visible to readers once this returns.
+		 */
+		void apply();
+	}
+
+	/**
+	 * Retrieve a raw value.
+	 * @param key - The (encrypted) key of the value
+	 * @return The raw (encrypted) value, or null if there's no value for this key
+	 */
+	String get(String key);
+
+	/**
+	 * Checks whether a value is stored for the given key.
+	 * @param key - The (encrypted) key of the value
+	 * @return Returns true if a value is stored for this key, otherwise false.
+	 */
+	boolean contains(String key);
+
+	/**
+	 * Retrieve a snapshot of all stored values, which isn't affected by later changes.
+	 * @return A map containing all stored (encrypted) key/value pairs. Values written by someone else than {@link EncryptedStore} might not be
+	 * Strings.
+	 */
+	Map<String, ?> getAll();
+
+	/**
+	 * Create a new {@link Editor} for this storage.
+	 * @return A new {@link Editor}
+	 */
+	Editor edit();
+
+	/**
+	 * Registers a callback to be invoked when a stored value is changed. The storage keeps a strong reference to the listener until it's
+	 * unregistered.
+	 * @param listener - The {@link Listener} to register
+	 */
+	void registerListener(Listener listener);
+
+	/**
+	 * Unregisters a previously registered callback.
+	 * @param listener - The {@link Listener} to unregister
+	 */
+	void unregisterListener(Listener listener);
+
+}
@@ -0,0 +1,44 @@
+package com.pddstudio.preferences.encrypted;
+
+/**
+ * Per-thread scratch buffers for decrypting a stored value without allocating: the unescaped Base64 characters, the decoded cipher text and the
+ * decrypted payload. Only values of up to {@link #MAX_LENGTH} characters are decrypted into these buffers, so they have a fixed size and longer
+ * values take the allocating path instead.
+ * <p>
+ * The contents are only valid until the next value is decrypted on the same thread, so they have to be decoded right away.
+ */
+final class ReadBuffer {
+
+	/**
+	 * The maximum length of a stored (escaped) value which fits into the buffers. Primitive values take less than 100 characters with every
+	 * {@link CipherSuite}.
+	 */
+	static final int MAX_LENGTH = 512;
+
+	private static final ThreadLocal<ReadBuffer> BUFFERS = new ThreadLocal<ReadBuffer>() {
+		@Override
+		protected ReadBuffer initialValue() {
+			return new ReadBuffer();
+		}
+	};
+
+	final char[] chars;
+	final byte[] cipherText;
+	final byte[] payload;
+	int          payloadLength;
+
+	private ReadBuffer() {
+		this.chars = new char[MAX_LENGTH];
+		this.cipherText = new byte[MAX_LENGTH * 3 / 4];
+		this.payload = new byte[MAX_LENGTH * 3 / 4];
+	}
+
+	/**
+	 * Retrieve the buffers of the calling thread.
+	 * @return The {@link ReadBuffer} bound to the calling thread, which must not be shared with other threads
+	 */
+	static ReadBuffer get() {
+		return BUFFERS.get();
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PreferenceStorage} which spreads its entries over several other storages (shards), chosen by the hash of their (encrypted) key.
+ * Backends like {@code SharedPreferences} rewrite a whole file for every write, so with N shards a write only rewrites about
+ * 1/N of all entries. Bulk reads, {@link Editor#clear()} and listeners span all shards.
+ * <p>
+ * An {@link Editor} commits the changes of every shard separately, so a batch spanning several shards isn't written atomically as a whole.
+ * The shard of a key depends on the number of shards, so existing entries must be moved (e.g. with {@link StorageConverter}) when it changes.
+ */
+public final class ShardedStorage implements PreferenceStorage {
+
+	private final List<PreferenceStorage> shards;
+	private final Map<Listener, Listener> listeners;
+
+	/**
+	 * Create a new {@link ShardedStorage} spreading its entries over the given storages.
+	 * @param shards - The shards, in a fixed order
+	 */
+	public ShardedStorage(PreferenceStorage... shards) {
+		this(Arrays.asList(shards));
+	}
+
+	/**
+	 * Create a new {@link ShardedStorage} spreading its entries over the given storages.
+	 * @param shards - The shards, in a fixed order
+	 */
+	public ShardedStorage(List<PreferenceStorage> shards) {
+		if (shards.isEmpty()) {
+			throw new RuntimeException("Unable to initialize ShardedStorage! At least one shard is required.");
+		}
+		this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+		this.listeners = new HashMap<>();
+	}
+
+	private int shardIndex(String key) {
+		// String.hashCode() is specified, so a key always ends up in the same shard
+		return (key.hashCode() & 0x7FFFFFFF) % shards.size();
+	}
+
+	private PreferenceStorage shard(String key) {
+		return shards.get(shardIndex(key));
+	}
+
+	@Override
+	public String get(String key) {
+		return shard(key).get(key);
+	}
+
+	@Override
+	public boolean contains(String key) {
+		return shard(key).contains(key);
+	}
+
+	@Override
+	public Map<String, ?> getAll() {
+		Map<String, Object> values = new HashMap<>();
+		for (PreferenceStorage shard : shards) {
+			values.putAll(shard.getAll());
+		}
+		return values;
+	}
+
+	@Override
+	public PreferenceStorage.Editor edit() {
+		return new Editor();
+	}
+
+	@Override
+	public void registerListener(final Listener listener) {
+		Listener shardListener = new Listener() {
+			@Override
+			public void onStorageChanged(PreferenceStorage storage, String key) {
+				listener.onStorageChanged(ShardedStorage.this, key);
+			}
+		};
+		synchronized (listeners) {
+			if (listeners.containsKey(listener)) {
+				return;
+			}
+			listeners.put(listener, shardListener);
+		}
+		for (PreferenceStorage shard : shards) {
+			shard.registerListener(shardListener);
+		}
+	}
+
+	@Override
+	public void unregisterListener(Listener listener) {
+		Listener shardListener;
+		synchronized (listeners) {
+			shardListener = listeners.remove(listener);
+		}
+		if (shardListener != null) {
+			for (PreferenceStorage shard : shards) {
+				shard.unregisterListener(shardListener);
+			}
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ShardedStorage && ((ShardedStorage) o).shards.equals(shards);
+	}
+
+	@Override
+	public int hashCode() {
+		return shards.hashCode();
+	}
+
+	private final class Editor implements PreferenceStorage.Editor {
+
+		// editors are only created for shards which are actually modified
+		private final PreferenceStorage.Editor[] editors = new PreferenceStorage.Editor[shards.size()];
+
+		private PreferenceStorage.Editor editor(int index) {
+			if (editors[index] == null) {
+				editors[index] = shards.get(index).edit();
+			}
+			return editors[index];
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor put(String key, String value) {
+			editor(shardIndex(key)).put(key, value);
+			return this;
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor remove(String key) {
+			editor(shardIndex(key)).remove(key);
+			return this;
+		}
+
+		@Override
+		public synchronized PreferenceStorage.Editor clear() {
+			for (int i = 0; i < editors.length; i++) {
+				editor(i).clear();
+			}
+			return this;
+		}
+
+		private synchronized PreferenceStorage.Editor[] takeEditors() {
+			PreferenceStorage.Editor[] modifiedEditors = editors.clone();
+			Arrays.fill(editors, null);
+			return modifiedEditors;
+		}
+
+		@Override
+		public boolean commit() {
+			boolean committed = true;
+			for (PreferenceStorage.Editor editor : takeEditors()) {
+				if (editor != null) {
+					committed &= editor.commit();
+				}
+			}
+			return committed;
+		}
+
+		@Override
+		public void apply() {
+			for (PreferenceStorage.Editor editor : takeEditors()) {
+				if (editor != null) {
+					editor.apply();
+				}
+			}
+		}
+	}
+
+}
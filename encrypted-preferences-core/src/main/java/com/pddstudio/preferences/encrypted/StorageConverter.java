@@ -0,0 +1,50 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the stored entries of one {@link PreferenceStorage} to another, e.g. to convert existing {@code SharedPreferences}
+ * to a {@link LogStructuredStorage}. Entries are copied as they are, so they don't have to be decrypted and encrypted again.
+ */
+public final class StorageConverter {
+
+	private StorageConverter() {
+	}
+
+	/**
+	 * Copies all entries of the given source to the given target with a single commit.
+	 * <p>Example:
+	 * <pre>
+	 * StorageConverter.convert(new SharedPreferencesStorage(sharedPreferences), new LogStructuredStorage(file, LogStructuredStorage.Format.RAW), true);
+	 * </pre>
+	 * @param source - The {@link PreferenceStorage} to copy the entries from
+	 * @param target - The {@link PreferenceStorage} to copy the entries to, existing entries with the same keys are overwritten
+	 * @param removeFromSource - Whether to remove the copied entries from the source once they're written or not
+	 * @return The number of copied entries, or -1 if they couldn't be written
+	 */
+	public static int convert(PreferenceStorage source, PreferenceStorage target, boolean removeFromSource) {
+		PreferenceStorage.Editor targetEditor = target.edit();
+		List<String> copiedKeys = new ArrayList<>();
+		for (Map.Entry<String, ?> entry : source.getAll().entrySet()) {
+			// entries which weren't written by EncryptedPreferences can't be read by it anyway
+			if (entry.getValue() instanceof String) {
+				targetEditor.put(entry.getKey(), (String) entry.getValue());
+				copiedKeys.add(entry.getKey());
+			}
+		}
+		if (!targetEditor.commit()) {
+			return -1;
+		}
+		if (removeFromSource && !copiedKeys.isEmpty()) {
+			PreferenceStorage.Editor sourceEditor = source.edit();
+			for (String key : copiedKeys) {
+				sourceEditor.remove(key);
+			}
+			sourceEditor.commit();
+		}
+		return copiedKeys.size();
+	}
+
+}
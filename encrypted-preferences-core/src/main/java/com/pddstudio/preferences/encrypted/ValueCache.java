@@ -0,0 +1,69 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache for decrypted preference values, keyed by the plain (unencrypted) preference key.
+ * Every invalidation bumps a version counter. Readers capture the version before reading the underlying preferences and hand it back when
+ * caching the result, so a value read before a concurrent write can never overwrite the invalidation caused by that write.
+ */
+final class ValueCache {
+
+	/**
+	 * Marker stored for keys which don't exist in the underlying preferences.
+	 */
+	static final Object ABSENT = new Object();
+
+	private final Map<String, Object> entries;
+	private       long                version;
+
+	ValueCache(final int maxEntries) {
+		this.entries = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Retrieve the current version of this cache. Must be called before reading the value which should be cached afterwards.
+	 * @return The current version of this cache
+	 */
+	synchronized long version() {
+		return version;
+	}
+
+	/**
+	 * Retrieve the cached value for the given key.
+	 * @param key - The plain preference key
+	 * @return The cached value, {@link #ABSENT} if the key is known to not exist or null if nothing is cached for this key
+	 */
+	synchronized Object get(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Caches the given value, unless the cache was invalidated since the given version was retrieved.
+	 * @param key - The plain preference key
+	 * @param value - The decrypted value or {@link #ABSENT}
+	 * @param readVersion - The version retrieved via {@link #version()} before the value was read
+	 */
+	synchronized void put(String key, Object value, long readVersion) {
+		if (readVersion == version) {
+			entries.put(key, value);
+		}
+	}
+
+	synchronized void invalidate(String key) {
+		version++;
+		entries.remove(key);
+	}
+
+	synchronized void invalidateAll() {
+		version++;
+		entries.clear();
+	}
+
+}
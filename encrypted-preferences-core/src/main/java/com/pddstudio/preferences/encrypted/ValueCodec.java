@@ -0,0 +1,368 @@
+package com.pddstudio.preferences.encrypted;
+
+import java.nio.charset.Charset;
+
+/**
+ * Encodes and decodes the plain payload of a preference value before it's encrypted and after it's decrypted.
+ * Two payload formats can be read:
+ * <ul>
+ * <li>The text format, which is the UTF-8 encoded {@code String.valueOf()} representation of the value and carries no type information.</li>
+ * <li>The binary format, which starts with a {@link #FORMAT_BINARY} marker byte followed by a type tag and the value itself, encoded as fixed-width
+ * big-endian bytes (or UTF-8 bytes for Strings).</li>
+ * </ul>
+ * A text payload would have to start with {@code U+0000} to be mistaken for a binary one, so both formats can be told apart by the first bytes of a
+ * payload. Anything that isn't a well-formed binary payload is read as text.
+ * <p>
+ * When keys are hashed, every payload is additionally wrapped into a keyed payload ({@link #FORMAT_KEYED} marker byte, the big-endian length of
+ * the UTF-8 encoded key, the key and the actual payload), which keeps the name of the key, as it can't be restored from its hash.
+ */
+final class ValueCodec {
+
+	static final byte FORMAT_BINARY = 0x00;
+	static final byte FORMAT_KEYED  = 0x01;
+
+	static final byte TYPE_STRING  = 's';
+	static final byte TYPE_INT     = 'i';
+	static final byte TYPE_LONG    = 'l';
+	static final byte TYPE_FLOAT   = 'f';
+	static final byte TYPE_BOOLEAN = 'b';
+
+	private static final int     HEADER_LENGTH = 2;
+	private static final Charset CHARSET       = Charset.forName("UTF-8");
+	// can't be the result of parsing up to 18 digits
+	private static final long    NOT_DECIMAL   = Long.MIN_VALUE;
+
+	private ValueCodec() {
+	}
+
+	static byte[] encodeString(String value) {
+		byte[] bytes = value.getBytes(CHARSET);
+		byte[] payload = header(TYPE_STRING, bytes.length);
+		System.arraycopy(bytes, 0, payload, HEADER_LENGTH, bytes.length);
+		return payload;
+	}
+
+	static byte[] encodeInt(int value) {
+		byte[] payload = header(TYPE_INT, 4);
+		writeInt(payload, HEADER_LENGTH, value);
+		return payload;
+	}
+
+	static byte[] encodeLong(long value) {
+		byte[] payload = header(TYPE_LONG, 8);
+		writeInt(payload, HEADER_LENGTH, (int) (value >>> 32));
+		writeInt(payload, HEADER_LENGTH + 4, (int) value);
+		return payload;
+	}
+
+	static byte[] encodeFloat(float value) {
+		byte[] payload = header(TYPE_FLOAT, 4);
+		writeInt(payload, HEADER_LENGTH, Float.floatToIntBits(value));
+		return payload;
+	}
+
+	static byte[] encodeBoolean(boolean value) {
+		byte[] payload = header(TYPE_BOOLEAN, 1);
+		payload[HEADER_LENGTH] = (byte) (value ? 1 : 0);
+		return payload;
+	}
+
+	/**
+	 * Decodes the given payload into its value.
+	 * @param payload - The decrypted payload, might be null
+	 * @return A {@link String} for text payloads, the boxed value for binary payloads or null if the payload is null or empty
+	 */
+	static Object decode(byte[] payload) {
+		return payload == null ? null : decode(payload, payload.length);
+	}
+
+	/**
+	 * Decodes the first bytes of the given buffer into a value.
+	 * @param payload - The buffer holding the decrypted payload
+	 * @param length - The length of the payload, a negative length is treated like a missing payload
+	 * @return A {@link String} for text payloads, the boxed value for binary payloads or null if the payload is empty
+	 */
+	static Object decode(byte[] payload, int length) {
+		if (length <= 0) {
+			return null;
+		}
+		switch (binaryType(payload, length)) {
+			case TYPE_STRING:
+				return new String(payload, HEADER_LENGTH, length - HEADER_LENGTH, CHARSET);
+			case TYPE_INT:
+				return readInt(payload, HEADER_LENGTH);
+			case TYPE_LONG:
+				return readLong(payload, HEADER_LENGTH);
+			case TYPE_FLOAT:
+				return Float.intBitsToFloat(readInt(payload, HEADER_LENGTH));
+			case TYPE_BOOLEAN:
+				return payload[HEADER_LENGTH] != 0;
+			default:
+				return new String(payload, 0, length, CHARSET);
+		}
+	}
+
+	static int decodeInt(byte[] payload, int defaultValue) {
+		return payload == null ? defaultValue : decodeInt(payload, payload.length, defaultValue);
+	}
+
+	static long decodeLong(byte[] payload, long defaultValue) {
+		return payload == null ? defaultValue : decodeLong(payload, payload.length, defaultValue);
+	}
+
+	static float decodeFloat(byte[] payload, float defaultValue) {
+		return payload == null ? defaultValue : decodeFloat(payload, payload.length, defaultValue);
+	}
+
+	static boolean decodeBoolean(byte[] payload, boolean defaultValue) {
+		return payload == null ? defaultValue : decodeBoolean(payload, payload.length, defaultValue);
+	}
+
+	/*
+	 * The primitive decoders below read the first bytes of a (reused) buffer and follow the same rules as the conversions further down. Binary
+	 * values of the requested type, decimal numbers and booleans in the text format are decoded without allocating, everything else is converted
+	 * through its String representation.
+	 */
+
+	static int decodeInt(byte[] payload, int length, int defaultValue) {
+		if (length <= 0) {
+			return defaultValue;
+		}
+		byte type = binaryType(payload, length);
+		if (type == TYPE_INT) {
+			return readInt(payload, HEADER_LENGTH);
+		}
+		// up to 9 digits always fit into an int
+		long value = parseDecimal(payload, textOffset(type), length, 9);
+		return value != NOT_DECIMAL ? (int) value : toInt(decode(payload, length), defaultValue);
+	}
+
+	static long decodeLong(byte[] payload, int length, long defaultValue) {
+		if (length <= 0) {
+			return defaultValue;
+		}
+		byte type = binaryType(payload, length);
+		if (type == TYPE_LONG) {
+			return readLong(payload, HEADER_LENGTH);
+		}
+		long value = parseDecimal(payload, textOffset(type), length, 18);
+		return value != NOT_DECIMAL ? value : toLong(decode(payload, length), defaultValue);
+	}
+
+	static float decodeFloat(byte[] payload, int length, float defaultValue) {
+		if (length <= 0) {
+			return defaultValue;
+		}
+		if (binaryType(payload, length) == TYPE_FLOAT) {
+			return Float.intBitsToFloat(readInt(payload, HEADER_LENGTH));
+		}
+		return toFloat(decode(payload, length), defaultValue);
+	}
+
+	static boolean decodeBoolean(byte[] payload, int length, boolean defaultValue) {
+		if (length <= 0) {
+			return defaultValue;
+		}
+		byte type = binaryType(payload, length);
+		if (type == TYPE_BOOLEAN) {
+			return payload[HEADER_LENGTH] != 0;
+		}
+		if (type != 0 && type != TYPE_STRING) {
+			return toBoolean(decode(payload, length), defaultValue);
+		}
+		// Boolean.parseBoolean() without decoding the text, only the ASCII "true" in any case is true
+		int offset = textOffset(type);
+		if (offset == length) {
+			return defaultValue;
+		}
+		return length - offset == 4 && (payload[offset] | 0x20) == 't' && (payload[offset + 1] | 0x20) == 'r' && (payload[offset + 2] | 0x20) == 'u'
+			   && (payload[offset + 3] | 0x20) == 'e';
+	}
+
+	static String decodeString(byte[] payload, String defaultValue) {
+		return toString(decode(payload), defaultValue);
+	}
+
+	/*
+	 * The conversions below follow the rules of the text format: binary values of another type are converted through their String representation,
+	 * empty Strings and unparsable numbers result in the default value.
+	 */
+
+	static int toInt(Object value, int defaultValue) {
+		if (value instanceof Integer) {
+			return (Integer) value;
+		}
+		String text = toString(value, null);
+		if (text == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	static long toLong(Object value, long defaultValue) {
+		if (value instanceof Long) {
+			return (Long) value;
+		}
+		String text = toString(value, null);
+		if (text == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(text);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	static float toFloat(Object value, float defaultValue) {
+		if (value instanceof Float) {
+			return (Float) value;
+		}
+		String text = toString(value, null);
+		if (text == null) {
+			return defaultValue;
+		}
+		try {
+			return Float.parseFloat(text);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	static boolean toBoolean(Object value, boolean defaultValue) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		String text = toString(value, null);
+		return text == null ? defaultValue : Boolean.parseBoolean(text);
+	}
+
+	static String toString(Object value, String defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		String text = String.valueOf(value);
+		return text.isEmpty() ? defaultValue : text;
+	}
+
+	/**
+	 * Wraps the given payload into a keyed payload.
+	 * @param key - The plain preference key
+	 * @param payload - The payload of the value
+	 * @return The keyed payload
+	 */
+	static byte[] encodeKeyed(String key, byte[] payload) {
+		byte[] keyBytes = key.getBytes(CHARSET);
+		byte[] keyed = new byte[5 + keyBytes.length + payload.length];
+		keyed[0] = FORMAT_KEYED;
+		writeInt(keyed, 1, keyBytes.length);
+		System.arraycopy(keyBytes, 0, keyed, 5, keyBytes.length);
+		System.arraycopy(payload, 0, keyed, 5 + keyBytes.length, payload.length);
+		return keyed;
+	}
+
+	/**
+	 * Retrieve the key of a keyed payload.
+	 * @param keyed - The keyed payload, might be null
+	 * @return The plain preference key, or null if the given payload isn't a well-formed keyed payload
+	 */
+	static String keyOf(byte[] keyed) {
+		int keyLength = keyLength(keyed);
+		return keyLength < 0 ? null : new String(keyed, 5, keyLength, CHARSET);
+	}
+
+	/**
+	 * Retrieve the actual payload of a keyed payload.
+	 * @param keyed - The keyed payload, might be null
+	 * @return The wrapped payload, or null if the given payload isn't a well-formed keyed payload
+	 */
+	static byte[] payloadOf(byte[] keyed) {
+		int keyLength = keyLength(keyed);
+		if (keyLength < 0) {
+			return null;
+		}
+		byte[] payload = new byte[keyed.length - 5 - keyLength];
+		System.arraycopy(keyed, 5 + keyLength, payload, 0, payload.length);
+		return payload;
+	}
+
+	private static int keyLength(byte[] keyed) {
+		if (keyed == null || keyed.length < 5 || keyed[0] != FORMAT_KEYED) {
+			return -1;
+		}
+		int keyLength = readInt(keyed, 1);
+		return keyLength >= 0 && keyLength <= keyed.length - 5 ? keyLength : -1;
+	}
+
+	private static byte binaryType(byte[] payload, int length) {
+		if (length < HEADER_LENGTH || payload[0] != FORMAT_BINARY) {
+			return 0;
+		}
+		byte type = payload[1];
+		int valueLength = length - HEADER_LENGTH;
+		switch (type) {
+			case TYPE_STRING:
+				return type;
+			case TYPE_INT:
+			case TYPE_FLOAT:
+				return valueLength == 4 ? type : 0;
+			case TYPE_LONG:
+				return valueLength == 8 ? type : 0;
+			case TYPE_BOOLEAN:
+				return valueLength == 1 ? type : 0;
+			default:
+				return 0;
+		}
+	}
+
+	private static int textOffset(byte type) {
+		return type == TYPE_STRING ? HEADER_LENGTH : 0;
+	}
+
+	/**
+	 * Parses an ASCII decimal number like {@link Long#parseLong(String)} does, but only up to the given number of digits, so it can't overflow.
+	 * @return The parsed number, or {@link #NOT_DECIMAL} if the text isn't a decimal number of at most the given number of digits
+	 */
+	private static long parseDecimal(byte[] text, int offset, int length, int maxDigits) {
+		int start = offset < length && (text[offset] == '-' || text[offset] == '+') ? offset + 1 : offset;
+		if (start == length || length - start > maxDigits) {
+			return NOT_DECIMAL;
+		}
+		long value = 0;
+		for (int i = start; i < length; i++) {
+			int digit = text[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return NOT_DECIMAL;
+			}
+			value = value * 10 + digit;
+		}
+		return text[offset] == '-' ? -value : value;
+	}
+
+	private static byte[] header(byte type, int valueLength) {
+		byte[] payload = new byte[HEADER_LENGTH + valueLength];
+		payload[0] = FORMAT_BINARY;
+		payload[1] = type;
+		return payload;
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16 | (buffer[offset + 2] & 0xFF) << 8 | (buffer[offset + 3] & 0xFF);
+	}
+
+	private static long readLong(byte[] buffer, int offset) {
+		return (long) readInt(buffer, offset) << 32 | (readInt(buffer, offset + 4) & 0xFFFFFFFFL);
+	}
+
+}
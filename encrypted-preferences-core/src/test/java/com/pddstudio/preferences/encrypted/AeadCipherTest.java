@@ -0,0 +1,76 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AeadCipherTest {
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final byte[]  KEY     = new byte[32];
+
+	@Test
+	public void testGcmRoundTrip() throws GeneralSecurityException {
+		AeadCipher cipher = new AeadCipher(CipherSuite.AES_GCM, KEY);
+		byte[] payload = "Some Test String".getBytes(CHARSET);
+		byte[] record = cipher.encrypt(payload);
+		assertEquals(AeadCipher.HEADER_SIZE + payload.length + AeadCipher.TAG_SIZE, record.length);
+		assertEquals(CipherSuite.AES_GCM.version, record[0]);
+		assertArrayEquals(payload, cipher.decrypt(record));
+		assertArrayEquals(new byte[0], cipher.decrypt(cipher.encrypt(new byte[0])));
+	}
+
+	@Test
+	public void testNeverBlockAligned() throws GeneralSecurityException {
+		AeadCipher cipher = new AeadCipher(CipherSuite.AES_GCM, KEY);
+		for (int length = 0; length < 64; length++) {
+			byte[] payload = new byte[length];
+			byte[] record = cipher.encrypt(payload);
+			assertTrue(AeadCipher.isAuthenticated(record.length));
+			assertEquals(CipherSuite.AES_GCM, AeadCipher.suiteOf(record));
+			assertArrayEquals(payload, cipher.decrypt(record));
+		}
+	}
+
+	@Test
+	public void testRandomNonce() throws GeneralSecurityException {
+		AeadCipher cipher = new AeadCipher(CipherSuite.AES_GCM, KEY);
+		byte[] payload = "value".getBytes(CHARSET);
+		assertFalse(Arrays.equals(cipher.encrypt(payload), cipher.encrypt(payload)));
+	}
+
+	@Test
+	public void testModifiedRecordRejected() throws GeneralSecurityException {
+		AeadCipher cipher = new AeadCipher(CipherSuite.AES_GCM, KEY);
+		byte[] record = cipher.encrypt("value".getBytes(CHARSET));
+		record[record.length - 1] ^= 1;
+		try {
+			cipher.decrypt(record);
+			fail("Modified record was decrypted");
+		} catch (GeneralSecurityException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testChaCha20Poly1305() throws GeneralSecurityException {
+		if (!CipherSuite.CHACHA20_POLY1305.isSupported()) {
+			return;
+		}
+		AeadCipher cipher = new AeadCipher(CipherSuite.CHACHA20_POLY1305, KEY);
+		byte[] payload = "Some Test String".getBytes(CHARSET);
+		byte[] record = cipher.encrypt(payload);
+		assertEquals(CipherSuite.CHACHA20_POLY1305.version, record[0]);
+		assertArrayEquals(payload, cipher.decrypt(record));
+		assertArrayEquals(payload, cipher.decrypt(record));
+	}
+
+}
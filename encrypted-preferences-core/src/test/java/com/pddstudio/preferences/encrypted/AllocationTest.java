@@ -0,0 +1,78 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class AllocationTest {
+
+	private static final int WARM_UP_CALLS = 100000;
+	private static final int CALLS         = 10000;
+	private static final int ROUNDS        = 10;
+
+	private static EncryptedStore.Builder builder() {
+		return new EncryptedStore.Builder().withEncryptionPassword("AllocationTest").withStorage(new InMemoryStorage());
+	}
+
+	@Test
+	public void testCachedGetInt() {
+		EncryptedStore store = builder().withValueCache(8).build();
+		store.edit().putInt("int", 42).commit();
+		assertAllocationFree(store);
+	}
+
+	@Test
+	public void testUncachedGetInt() {
+		EncryptedStore store = builder().build();
+		store.edit().putInt("int", 42).commit();
+		assertAllocationFree(store);
+	}
+
+	@Test
+	public void testUncachedBinaryGetInt() {
+		EncryptedStore store = builder().withBinaryValues(true).build();
+		store.edit().putInt("int", 42).commit();
+		assertAllocationFree(store);
+	}
+
+	private static void assertAllocationFree(EncryptedStore store) {
+		com.sun.management.ThreadMXBean threadBean = threadBean();
+		long threadId = Thread.currentThread().getId();
+		// until the read path is compiled, neither escape analysis nor inlining remove the temporary objects of the JDK's cipher
+		assertEquals(42 * WARM_UP_CALLS, readInts(store, WARM_UP_CALLS));
+		// reading the counter might allocate itself
+		long overhead = -allocatedBytes(threadBean, threadId) + allocatedBytes(threadBean, threadId);
+		// a round might still overlap a (re)compilation, at least one has to be free of allocations
+		long allocated = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS && allocated > 0; round++) {
+			long before = allocatedBytes(threadBean, threadId);
+			assertEquals(42 * CALLS, readInts(store, CALLS));
+			allocated = allocatedBytes(threadBean, threadId) - before - overhead;
+		}
+		assertEquals(0, Math.max(allocated, 0));
+	}
+
+	private static int readInts(EncryptedStore store, int calls) {
+		int sum = 0;
+		for (int i = 0; i < calls; i++) {
+			sum += store.getInt("int", 0);
+		}
+		return sum;
+	}
+
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threadBean, long threadId) {
+		return threadBean.getThreadAllocatedBytes(threadId);
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		Object threadBean = ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+		assumeTrue(sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled());
+		return sunThreadBean;
+	}
+
+}
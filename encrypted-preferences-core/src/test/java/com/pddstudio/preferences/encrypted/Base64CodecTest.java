@@ -0,0 +1,39 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Base64CodecTest {
+
+	@Test
+	public void testMatchesJdkEncoder() {
+		Random random = new Random(42);
+		for (int length = 0; length < 64; length++) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			String standard = java.util.Base64.getEncoder().encodeToString(data);
+			String urlSafe = java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+			assertEquals(standard, Base64Codec.encode(data, false));
+			assertEquals(urlSafe, Base64Codec.encode(data, true));
+			assertArrayEquals(data, Base64Codec.decode(standard, false));
+			assertArrayEquals(data, Base64Codec.decode(urlSafe, true));
+		}
+	}
+
+	@Test
+	public void testInvalidInput() {
+		assertNull(Base64Codec.decode("abc-", false));
+		assertNull(Base64Codec.decode("abc+", true));
+		assertNull(Base64Codec.decode("a", false));
+		assertNull(Base64Codec.decode("ab===", false));
+		assertEquals(0, Base64Codec.decode("", false).length);
+		assertEquals("[1, 2]", Arrays.toString(Base64Codec.decode("AQI", false)));
+	}
+
+}
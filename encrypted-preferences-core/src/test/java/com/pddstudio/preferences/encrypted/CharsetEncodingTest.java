@@ -0,0 +1,38 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CharsetEncodingTest {
+
+	private static final String BASE64  = "2+Q+mRkVOU5DIM1XLHI77PM7eIPXPn4wHzvdmTeIzD8=";
+	private static final String ENCODED = "2x0P1XxQx0P1XxmRkVOU5DIM1XLHI77PM7eIPXPn4wHzvdmTeIzD8x0P3Xx";
+
+	@Test
+	public void testEncode() {
+		assertEquals(ENCODED, CharsetEncoding.encode(BASE64));
+		assertEquals("x0P2Xxabcx0P3Xxx0P3Xx", CharsetEncoding.encode("/abc=="));
+	}
+
+	@Test
+	public void testDecode() {
+		assertEquals(BASE64, CharsetEncoding.decode(ENCODED));
+		assertEquals("/abc==", CharsetEncoding.decode("x0P2Xxabcx0P3Xxx0P3Xx"));
+	}
+
+	@Test
+	public void testIncompleteTokenIsKept() {
+		assertEquals("abcx0P1X", CharsetEncoding.decode("abcx0P1X"));
+		assertEquals("x0P4Xx+", CharsetEncoding.decode("x0P4Xxx0P1Xx"));
+	}
+
+	@Test
+	public void testUnchangedInstanceReturned() {
+		String plain = "abcDEF123";
+		assertSame(plain, CharsetEncoding.encode(plain));
+		assertSame(plain, CharsetEncoding.decode(plain));
+	}
+
+}
@@ -0,0 +1,259 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EncryptedStoreTest {
+
+	private static EncryptedStore.Builder builder(PreferenceStorage storage) {
+		return new EncryptedStore.Builder().withEncryptionPassword("EncryptedStoreTest").withStorage(storage);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		EncryptedStore store = builder(new InMemoryStorage()).build();
+		assertTrue(store.edit().putString("string", "value").putInt("int", 42).putLong("long", 42L).putFloat("float", 4.2f)
+							 .putBoolean("boolean", true).commit());
+		assertEquals("value", store.getString("string", null));
+		assertEquals(42, store.getInt("int", 0));
+		assertEquals(42L, store.getLong("long", 0L));
+		assertEquals(4.2f, store.getFloat("float", 0f), 0f);
+		assertTrue(store.getBoolean("boolean", false));
+		assertEquals(5, store.getAll().size());
+	}
+
+	@Test
+	public void testStoresEncryptedEntries() {
+		InMemoryStorage storage = new InMemoryStorage();
+		EncryptedStore store = builder(storage).build();
+		store.edit().putString("key", "value").commit();
+		Map<String, ?> storedValues = storage.getAll();
+		assertEquals(1, storedValues.size());
+		assertFalse(storedValues.containsKey("key"));
+		assertFalse(storedValues.containsValue("value"));
+		assertTrue(store.contains("key"));
+	}
+
+	@Test
+	public void testSharedStorage() {
+		InMemoryStorage storage = new InMemoryStorage();
+		builder(storage).withHashedKeys(true).withValueCache(8).build().edit().putInt("int", 1).commit();
+		EncryptedStore store = builder(storage).withHashedKeys(true).build();
+		assertEquals(1, store.getInt("int", 0));
+		assertEquals(Collections.singleton("int"), store.getAllKeys());
+	}
+
+	@Test
+	public void testImportValues() {
+		EncryptedStore store = builder(new InMemoryStorage()).build();
+		store.edit().putString("existing", "old").commit();
+		EncryptedStore.ImportedValues importedValues = store.importValues(Collections.singletonMap("existing", "new"), false, null);
+		assertTrue(importedValues.committed);
+		assertTrue(importedValues.keys.isEmpty());
+		assertEquals("old", store.getString("existing", null));
+	}
+
+	@Test
+	public void testImportProgress() {
+		EncryptedStore store = builder(new InMemoryStorage()).build();
+		Map<String, Object> values = new HashMap<>();
+		for (int i = 0; i < 4 * BulkProcessor.PARALLEL_THRESHOLD; i++) {
+			values.put("key " + i, i);
+		}
+		final List<Integer> processedCounts = new ArrayList<>();
+		store.importValues(values, false, new EncryptedStore.ImportProgressListener() {
+			@Override
+			public void onImportProgress(int processedCount, int totalCount) {
+				assertEquals(4 * BulkProcessor.PARALLEL_THRESHOLD, totalCount);
+				processedCounts.add(processedCount);
+			}
+		});
+		assertEquals(4 * BulkProcessor.PARALLEL_THRESHOLD / BulkProcessor.CHUNK_SIZE, processedCounts.size());
+		for (int i = 0; i < processedCounts.size(); i++) {
+			assertEquals((i + 1) * BulkProcessor.CHUNK_SIZE, (int) processedCounts.get(i));
+		}
+	}
+
+	@Test
+	public void testMetrics() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		EncryptedStore store = builder(new InMemoryStorage()).withValueCache(8).withMetrics(recorder).build();
+		store.edit().putInt("int", 1).commit();
+		store.getInt("int", 0);
+		store.getInt("int", 0);
+		store.getInt("missing", 0);
+		store.contains("int");
+		MetricsRecorder.Snapshot snapshot = recorder.snapshot();
+		assertEquals(1, snapshot.count(MetricsSink.Operation.PUT));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.COMMIT));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.GET_MISS));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.GET_HIT));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.GET_DEFAULT));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.CONTAINS));
+		assertEquals(2, snapshot.count(MetricsSink.Operation.ENCRYPT_KEY));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.DECRYPT_VALUE));
+	}
+
+	@Test
+	public void testUnconvertibleValueCountedAsDefault() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		EncryptedStore store = builder(new InMemoryStorage()).withMetrics(recorder).build();
+		store.edit().putString("string", "text").putInt("zero", 0).putString("empty", "").commit();
+		assertEquals(7, store.getInt("string", 7));
+		assertEquals(1.5f, store.getFloat("string", 1.5f), 0f);
+		assertEquals(0, store.getInt("zero", 0));
+		assertEquals("default", store.getString("empty", "default"));
+		MetricsRecorder.Snapshot snapshot = recorder.snapshot();
+		assertEquals(3, snapshot.count(MetricsSink.Operation.GET_DEFAULT));
+		assertEquals(1, snapshot.count(MetricsSink.Operation.GET_MISS));
+	}
+
+	@Test
+	public void testPrefetchWithoutValueCache() throws Exception {
+		MetricsRecorder recorder = new MetricsRecorder();
+		EncryptedStore store = builder(new InMemoryStorage()).withMetrics(recorder).build();
+		store.edit().putString("string", "value").commit();
+		store.prefetch("string").get();
+		assertEquals(1, recorder.snapshot().count(MetricsSink.Operation.DECRYPT_VALUE));
+		assertEquals("value", store.getString("string", null));
+		assertEquals(1, recorder.snapshot().count(MetricsSink.Operation.DECRYPT_VALUE));
+		assertEquals(1, recorder.snapshot().count(MetricsSink.Operation.GET_HIT));
+		store.edit().putString("string", "changed").commit();
+		assertEquals("changed", store.getString("string", null));
+	}
+
+	@Test
+	public void testDecryptFailureMetrics() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.edit().put("not a key!", "not a value!").commit();
+		EncryptedStore store = builder(storage).withMetrics(recorder).build();
+		assertTrue(store.getAll().isEmpty());
+		assertEquals(2, recorder.snapshot().count(MetricsSink.Operation.DECRYPT_FAILURE));
+	}
+
+	@Test
+	public void testModifiedValueReadsAsAbsent() {
+		InMemoryStorage storage = new InMemoryStorage();
+		EncryptedStore store = builder(storage).withUrlSafeEncoding(true).withCipherSuite(CipherSuite.AES_GCM).build();
+		// 3 bytes of text would make the record a multiple of the AES block size, so it's extended by a filler byte
+		store.edit().putString("string", "abc").commit();
+		String encKey = storage.getAll().keySet().iterator().next();
+		byte[] record = Base64Codec.decode(storage.get(encKey), true);
+		assertEquals(33, record.length);
+		// every modification, including the filler flag and the filler byte itself
+		for (int i = 0; i < record.length; i++) {
+			for (int difference = 1; difference < 256; difference++) {
+				byte[] modified = record.clone();
+				modified[i] ^= (byte) difference;
+				storage.edit().put(encKey, Base64Codec.encode(modified, true)).commit();
+				assertNull(store.getString("string", null));
+			}
+		}
+	}
+
+	@Test
+	public void testCbcValuesReadByAuthenticatedSuite() {
+		InMemoryStorage storage = new InMemoryStorage();
+		EncryptedStore cbcStore = builder(storage).build();
+		EncryptedStore.Editor editor = cbcStore.edit();
+		for (int i = 0; i < 1000; i++) {
+			editor.putString("string " + i, "value " + i);
+		}
+		assertTrue(editor.commit());
+		// about 1 in 128 AES-CBC records starts with the version byte of an authenticated suite by chance
+		int collisions = 0;
+		for (Object encValue : storage.getAll().values()) {
+			CipherSuite suite = CipherSuite.forVersion(Base64Codec.decode(CharsetEncoding.decode((String) encValue), false)[0]);
+			if (suite != null && suite != CipherSuite.AES_CBC) {
+				collisions++;
+			}
+		}
+		assertTrue(collisions > 0);
+		EncryptedStore gcmStore = builder(storage).withCipherSuite(CipherSuite.AES_GCM).build();
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("value " + i, gcmStore.getString("string " + i, null));
+		}
+	}
+
+	@Test
+	public void testCommitFromListener() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		final EncryptedStore store = builder(storage).build();
+		storage.registerListener(new PreferenceStorage.Listener() {
+			@Override
+			public void onStorageChanged(PreferenceStorage storage, String key) {
+				// notified on the writer thread, which has to write this commit as well
+				if (!store.contains("derived")) {
+					store.edit().putBoolean("derived", true).commit();
+				}
+			}
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Boolean> committed = executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return store.edit().putInt("int", 1).commit();
+			}
+		});
+		assertTrue(committed.get(10, TimeUnit.SECONDS));
+		assertTrue(store.getBoolean("derived", false));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testStoragesWrittenIndependently() throws Exception {
+		InMemoryStorage blockedStorage = new InMemoryStorage();
+		final CountDownLatch release = new CountDownLatch(1);
+		blockedStorage.registerListener(new PreferenceStorage.Listener() {
+			@Override
+			public void onStorageChanged(PreferenceStorage storage, String key) {
+				// holds up the writer of this storage only
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		EncryptedStore blockedStore = builder(blockedStorage).build();
+		blockedStore.edit().putInt("int", 1).apply();
+		final EncryptedStore store = builder(new InMemoryStorage()).build();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Boolean> committed = executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return store.edit().putInt("int", 2).commit();
+			}
+		});
+		try {
+			assertTrue(committed.get(10, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+		assertEquals(1, blockedStore.getInt("int", 0));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMissingStorage() {
+		new EncryptedStore.Builder().withEncryptionPassword("EncryptedStoreTest").build();
+	}
+
+}
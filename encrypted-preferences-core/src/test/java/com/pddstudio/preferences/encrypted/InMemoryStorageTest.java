@@ -0,0 +1,65 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryStorageTest {
+
+	@Test
+	public void testPutAndRemove() {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.edit().put("first", "1").put("second", "2").apply();
+		assertEquals("1", storage.get("first"));
+		assertTrue(storage.contains("second"));
+		assertTrue(storage.edit().remove("first").commit());
+		assertNull(storage.get("first"));
+		assertEquals(1, storage.getAll().size());
+	}
+
+	@Test
+	public void testClearBeforeChanges() {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.edit().put("first", "1").commit();
+		storage.edit().put("second", "2").clear().commit();
+		assertFalse(storage.contains("first"));
+		assertEquals("2", storage.get("second"));
+	}
+
+	@Test
+	public void testSnapshotUnaffectedByChanges() {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.edit().put("first", "1").commit();
+		int size = storage.getAll().size();
+		storage.edit().put("second", "2").commit();
+		assertEquals(1, size);
+		assertEquals(2, storage.getAll().size());
+	}
+
+	@Test
+	public void testListener() {
+		final List<String> changedKeys = new ArrayList<>();
+		PreferenceStorage.Listener listener = new PreferenceStorage.Listener() {
+			@Override
+			public void onStorageChanged(PreferenceStorage storage, String key) {
+				changedKeys.add(key);
+			}
+		};
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.registerListener(listener);
+		storage.edit().put("first", "1").commit();
+		storage.edit().clear().commit();
+		storage.unregisterListener(listener);
+		storage.edit().put("second", "2").commit();
+		assertEquals(2, changedKeys.size());
+		assertEquals("first", changedKeys.get(0));
+		assertNull(changedKeys.get(1));
+	}
+
+}
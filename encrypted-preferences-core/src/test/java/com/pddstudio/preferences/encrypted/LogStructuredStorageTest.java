@@ -0,0 +1,202 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LogStructuredStorageTest {
+
+	private File file;
+
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("LogStructuredStorageTest", ".log");
+		assertTrue(file.delete());
+	}
+
+	@After
+	public void cleanup() {
+		file.delete();
+	}
+
+	@Test
+	public void testValuesRecovered() throws Exception {
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		assertTrue(storage.edit().put("first", "1").put("second", "2").commit());
+		assertTrue(storage.edit().remove("first").put("third", "3").commit());
+		storage.close();
+
+		LogStructuredStorage reopened = new LogStructuredStorage(file);
+		assertFalse(reopened.contains("first"));
+		assertEquals("2", reopened.get("second"));
+		assertEquals("3", reopened.get("third"));
+		reopened.close();
+	}
+
+	@Test
+	public void testAppliedValuesRecovered() throws Exception {
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		storage.edit().put("first", "1").apply();
+		storage.edit().clear().put("second", "2").apply();
+		assertEquals("2", storage.get("second"));
+		storage.close();
+
+		LogStructuredStorage reopened = new LogStructuredStorage(file);
+		assertNull(reopened.get("first"));
+		assertEquals("2", reopened.get("second"));
+		reopened.close();
+	}
+
+	@Test
+	public void testWritesAfterCloseRejected() throws Exception {
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		PreferenceStorage.Editor editor = storage.edit().put("first", "1");
+		storage.close();
+		assertNull(storage.get("first"));
+		try {
+			editor.commit();
+			fail("commit() succeeded on a closed storage");
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			storage.edit();
+			fail("edit() succeeded on a closed storage");
+		} catch (IllegalStateException expected) {
+		}
+		storage.close();
+	}
+
+	@Test
+	public void testIncompleteRecordDiscarded() throws Exception {
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		assertTrue(storage.edit().put("first", "1").commit());
+		assertTrue(storage.edit().put("second", "2").commit());
+		storage.close();
+		// simulate a crash while the last record was written
+		long completeLength = file.length();
+		RandomAccessFile log = new RandomAccessFile(file, "rw");
+		log.setLength(completeLength - 3);
+		log.close();
+
+		LogStructuredStorage recovered = new LogStructuredStorage(file);
+		assertEquals("1", recovered.get("first"));
+		assertFalse(recovered.contains("second"));
+		assertTrue(recovered.edit().put("third", "3").commit());
+		recovered.close();
+
+		LogStructuredStorage reopened = new LogStructuredStorage(file);
+		assertEquals("1", reopened.get("first"));
+		assertEquals("3", reopened.get("third"));
+		reopened.close();
+	}
+
+	@Test
+	public void testLogCompacted() throws Exception {
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 1024; i++) {
+			value.append('x');
+		}
+		for (int i = 0; i < 256; i++) {
+			assertTrue(storage.edit().put("key", value.toString() + i).put("other", "value").commit());
+		}
+		// compactions run in the background, closing waits for them
+		storage.close();
+		assertTrue(file.length() < 64 * 1024);
+
+		LogStructuredStorage reopened = new LogStructuredStorage(file);
+		assertEquals(value.toString() + 255, reopened.get("key"));
+		assertEquals("value", reopened.get("other"));
+		assertEquals(2, reopened.getAll().size());
+		reopened.close();
+	}
+
+	@Test
+	public void testWritesDuringCompactionRecovered() throws Exception {
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 1024; i++) {
+			value.append('x');
+		}
+		for (int i = 0; i < 1024; i++) {
+			storage.edit().put("key", value.toString() + i).put("key " + i, String.valueOf(i)).apply();
+		}
+		storage.close();
+
+		LogStructuredStorage reopened = new LogStructuredStorage(file);
+		assertEquals(value.toString() + 1023, reopened.get("key"));
+		for (int i = 0; i < 1024; i++) {
+			assertEquals(String.valueOf(i), reopened.get("key " + i));
+		}
+		assertEquals(1025, reopened.getAll().size());
+		reopened.close();
+	}
+
+	@Test
+	public void testRawFormat() throws Exception {
+		Random random = new Random(42);
+		File textFile = File.createTempFile("LogStructuredStorageTest", ".log");
+		LogStructuredStorage textStorage = new LogStructuredStorage(textFile, LogStructuredStorage.Format.TEXT);
+		LogStructuredStorage rawStorage = new LogStructuredStorage(file, LogStructuredStorage.Format.RAW);
+		PreferenceStorage.Editor textEditor = textStorage.edit();
+		PreferenceStorage.Editor rawEditor = rawStorage.edit();
+		for (int i = 0; i < 64; i++) {
+			byte[] cipherText = new byte[32 + random.nextInt(32)];
+			random.nextBytes(cipherText);
+			String value = CharsetEncoding.encode(Base64Codec.encode(cipherText, false));
+			textEditor.put("key" + i, value);
+			rawEditor.put("key" + i, value);
+		}
+		rawEditor.put("text", "not base64!");
+		textEditor.put("text", "not base64!");
+		assertTrue(textEditor.commit());
+		assertTrue(rawEditor.commit());
+		textStorage.close();
+		rawStorage.close();
+		assertTrue(file.length() < textFile.length() * 4 / 5);
+
+		LogStructuredStorage reopened = new LogStructuredStorage(file, LogStructuredStorage.Format.RAW);
+		assertEquals(new LogStructuredStorage(textFile).getAll(), reopened.getAll());
+		assertEquals("not base64!", reopened.get("text"));
+		reopened.close();
+		textFile.delete();
+	}
+
+	@Test
+	public void testFormatConverted() throws Exception {
+		String value = CharsetEncoding.encode(Base64Codec.encode(new byte[] { 1, 2, 3, -1, -2 }, false));
+		LogStructuredStorage storage = new LogStructuredStorage(file);
+		assertTrue(storage.edit().put("key", value).commit());
+		storage.close();
+
+		LogStructuredStorage converted = new LogStructuredStorage(file, LogStructuredStorage.Format.RAW);
+		assertEquals(value, converted.get("key"));
+		converted.close();
+		LogStructuredStorage reverted = new LogStructuredStorage(file, LogStructuredStorage.Format.TEXT);
+		assertEquals(value, reverted.get("key"));
+		reverted.close();
+	}
+
+	@Test
+	public void testStorageConverted() throws Exception {
+		InMemoryStorage source = new InMemoryStorage();
+		source.edit().put("first", "1").put("second", "2").commit();
+		LogStructuredStorage target = new LogStructuredStorage(file, LogStructuredStorage.Format.RAW);
+		assertEquals(2, StorageConverter.convert(source, target, true));
+		assertEquals("1", target.get("first"));
+		assertEquals("2", target.get("second"));
+		assertTrue(source.getAll().isEmpty());
+		target.close();
+	}
+
+}
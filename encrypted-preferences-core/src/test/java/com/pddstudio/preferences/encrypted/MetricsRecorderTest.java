@@ -0,0 +1,76 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricsRecorderTest {
+
+	@Test
+	public void testSnapshot() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		recorder.record(MetricsSink.Operation.PUT, 100);
+		recorder.record(MetricsSink.Operation.PUT, 300);
+		MetricsRecorder.Snapshot snapshot = recorder.snapshot();
+		assertEquals(2, snapshot.count(MetricsSink.Operation.PUT));
+		assertEquals(400, snapshot.totalNanos(MetricsSink.Operation.PUT));
+		assertEquals(200, snapshot.meanNanos(MetricsSink.Operation.PUT));
+		assertEquals(300, snapshot.maxNanos(MetricsSink.Operation.PUT));
+		assertEquals(0, snapshot.count(MetricsSink.Operation.COMMIT));
+		assertEquals(2, recorder.snapshot().count(MetricsSink.Operation.PUT));
+	}
+
+	@Test
+	public void testPercentiles() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		for (int i = 0; i < 99; i++) {
+			recorder.record(MetricsSink.Operation.GET_HIT, 10);
+		}
+		recorder.record(MetricsSink.Operation.GET_HIT, 5000);
+		MetricsRecorder.Snapshot snapshot = recorder.snapshot();
+		// 10ns is counted in the bucket from 8 to 15ns
+		assertEquals(15, snapshot.percentileNanos(MetricsSink.Operation.GET_HIT, 50));
+		assertEquals(15, snapshot.percentileNanos(MetricsSink.Operation.GET_HIT, 99));
+		assertEquals(5000, snapshot.percentileNanos(MetricsSink.Operation.GET_HIT, 100));
+		assertEquals(0, snapshot.percentileNanos(MetricsSink.Operation.GET_MISS, 99));
+	}
+
+	@Test
+	public void testReset() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		recorder.record(MetricsSink.Operation.APPLY, 50);
+		assertEquals(1, recorder.reset().count(MetricsSink.Operation.APPLY));
+		MetricsRecorder.Snapshot snapshot = recorder.snapshot();
+		assertEquals(0, snapshot.count(MetricsSink.Operation.APPLY));
+		assertEquals(0, snapshot.maxNanos(MetricsSink.Operation.APPLY));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException {
+		final MetricsRecorder recorder = new MetricsRecorder();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int n = 1; n <= 10000; n++) {
+						recorder.record(MetricsSink.Operation.CONTAINS, n);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		MetricsRecorder.Snapshot snapshot = recorder.snapshot();
+		assertEquals(40000, snapshot.count(MetricsSink.Operation.CONTAINS));
+		assertEquals(4 * 50005000L, snapshot.totalNanos(MetricsSink.Operation.CONTAINS));
+		assertEquals(10000, snapshot.maxNanos(MetricsSink.Operation.CONTAINS));
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedStorageTest {
+
+	@Test
+	public void testEntriesSpreadOverShards() {
+		InMemoryStorage[] shards = { new InMemoryStorage(), new InMemoryStorage(), new InMemoryStorage(), new InMemoryStorage() };
+		ShardedStorage storage = new ShardedStorage(shards);
+		PreferenceStorage.Editor editor = storage.edit();
+		for (int i = 0; i < 100; i++) {
+			editor.put("key" + i, "value" + i);
+		}
+		assertTrue(editor.commit());
+		int total = 0;
+		for (InMemoryStorage shard : shards) {
+			assertFalse(shard.getAll().isEmpty());
+			total += shard.getAll().size();
+		}
+		assertEquals(100, total);
+		assertEquals(100, storage.getAll().size());
+		assertEquals("value42", storage.get("key42"));
+		assertTrue(new ShardedStorage(shards).contains("key42"));
+	}
+
+	@Test
+	public void testWriteOnlyTouchesItsShard() {
+		InMemoryStorage[] shards = { new InMemoryStorage(), new InMemoryStorage() };
+		final List<PreferenceStorage> changedShards = new ArrayList<>();
+		for (InMemoryStorage shard : shards) {
+			shard.registerListener(new PreferenceStorage.Listener() {
+				@Override
+				public void onStorageChanged(PreferenceStorage storage, String key) {
+					changedShards.add(storage);
+				}
+			});
+		}
+		new ShardedStorage(shards).edit().put("key", "value").apply();
+		assertEquals(1, changedShards.size());
+	}
+
+	@Test
+	public void testClearAndListenersSpanShards() {
+		ShardedStorage storage = new ShardedStorage(new InMemoryStorage(), new InMemoryStorage(), new InMemoryStorage());
+		final List<String> changedKeys = new ArrayList<>();
+		storage.registerListener(new PreferenceStorage.Listener() {
+			@Override
+			public void onStorageChanged(PreferenceStorage storage, String key) {
+				changedKeys.add(key);
+			}
+		});
+		PreferenceStorage.Editor editor = storage.edit();
+		for (int i = 0; i < 30; i++) {
+			editor.put("key" + i, "value");
+		}
+		editor.commit();
+		assertEquals(30, changedKeys.size());
+		assertTrue(storage.edit().clear().commit());
+		assertTrue(storage.getAll().isEmpty());
+	}
+
+}
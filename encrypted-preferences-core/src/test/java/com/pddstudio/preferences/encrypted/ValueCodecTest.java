@@ -0,0 +1,89 @@
+package com.pddstudio.preferences.encrypted;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ValueCodecTest {
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	@Test
+	public void testBinaryRoundTrip() {
+		assertEquals(-12345, ValueCodec.decodeInt(ValueCodec.encodeInt(-12345), 0));
+		assertEquals(Long.MIN_VALUE + 7, ValueCodec.decodeLong(ValueCodec.encodeLong(Long.MIN_VALUE + 7), 0L));
+		assertEquals(15.2f, ValueCodec.decodeFloat(ValueCodec.encodeFloat(15.2f), 0f), 0f);
+		assertTrue(ValueCodec.decodeBoolean(ValueCodec.encodeBoolean(true), false));
+		assertEquals("Some Test String", ValueCodec.decodeString(ValueCodec.encodeString("Some Test String"), null));
+	}
+
+	@Test
+	public void testBinaryLayout() {
+		byte[] payload = ValueCodec.encodeInt(0x01020304);
+		assertEquals(6, payload.length);
+		assertEquals(ValueCodec.FORMAT_BINARY, payload[0]);
+		assertEquals(ValueCodec.TYPE_INT, payload[1]);
+		assertEquals(0x01, payload[2]);
+		assertEquals(0x04, payload[5]);
+	}
+
+	@Test
+	public void testTextPayload() {
+		assertEquals(99, ValueCodec.decodeInt("99".getBytes(CHARSET), -1));
+		assertEquals(181123L, ValueCodec.decodeLong("181123".getBytes(CHARSET), -1L));
+		assertEquals(1.5f, ValueCodec.decodeFloat("1.5".getBytes(CHARSET), -1f), 0f);
+		assertTrue(ValueCodec.decodeBoolean("true".getBytes(CHARSET), false));
+		assertEquals("text", ValueCodec.decode("text".getBytes(CHARSET)));
+	}
+
+	@Test
+	public void testCrossTypeConversion() {
+		assertEquals("42", ValueCodec.decodeString(ValueCodec.encodeInt(42), null));
+		assertEquals(42L, ValueCodec.decodeLong(ValueCodec.encodeInt(42), -1L));
+		assertEquals(-1, ValueCodec.decodeInt(ValueCodec.encodeString("no number"), -1));
+		assertFalse(ValueCodec.decodeBoolean(ValueCodec.encodeString("no boolean"), true));
+	}
+
+	@Test
+	public void testBufferedPayload() {
+		byte[] buffer = new byte[32];
+		byte[] text = "-2147483648 trailing".getBytes(CHARSET);
+		System.arraycopy(text, 0, buffer, 0, text.length);
+		assertEquals(Integer.MIN_VALUE, ValueCodec.decodeInt(buffer, 11, 0));
+		assertEquals(-21474836L, ValueCodec.decodeLong(buffer, 9, 0L));
+		assertEquals(-1, ValueCodec.decodeInt(buffer, 12, -1));
+		assertEquals(-1, ValueCodec.decodeInt(buffer, 1, -1));
+		assertEquals(-1, ValueCodec.decodeInt(buffer, -1, -1));
+		byte[] binary = ValueCodec.encodeString("TRUE");
+		System.arraycopy(binary, 0, buffer, 0, binary.length);
+		assertTrue(ValueCodec.decodeBoolean(buffer, binary.length, false));
+		assertFalse(ValueCodec.decodeBoolean(buffer, binary.length - 1, true));
+		assertTrue(ValueCodec.decodeBoolean(buffer, 2, true));
+	}
+
+	@Test
+	public void testMissingOrEmptyPayload() {
+		assertNull(ValueCodec.decode(null));
+		assertNull(ValueCodec.decode(new byte[0]));
+		assertEquals(-1, ValueCodec.decodeInt(null, -1));
+		assertEquals("default", ValueCodec.decodeString(ValueCodec.encodeString(""), "default"));
+	}
+
+	@Test
+	public void testKeyedPayload() {
+		byte[] keyed = ValueCodec.encodeKeyed("KEY", ValueCodec.encodeInt(42));
+		assertEquals(ValueCodec.FORMAT_KEYED, keyed[0]);
+		assertEquals("KEY", ValueCodec.keyOf(keyed));
+		assertEquals(42, ValueCodec.decodeInt(ValueCodec.payloadOf(keyed), -1));
+		assertEquals("text", ValueCodec.decode(ValueCodec.payloadOf(ValueCodec.encodeKeyed("", "text".getBytes(CHARSET)))));
+		assertNull(ValueCodec.keyOf(ValueCodec.encodeInt(42)));
+		assertNull(ValueCodec.payloadOf("text".getBytes(CHARSET)));
+		assertNull(ValueCodec.keyOf(new byte[] { ValueCodec.FORMAT_KEYED, 0, 0, 0, 9, 'K' }));
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.pddstudio.preferences.encrypted;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure values written in the binary format can be read back and values written in the text format are still readable.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BinaryValuesTest {
+
+	Context              context;
+	EncryptedPreferences encryptedPreferences;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getContext();
+		encryptedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																		.withPreferenceName(getClass().getSimpleName())
+																		.withBinaryValues(true)
+																		.build();
+		encryptedPreferences.edit().clear().apply();
+	}
+
+	@Test
+	public void testBinaryValues() {
+		encryptedPreferences.edit()
+							.putFloat("FLOAT", 1.5f)
+							.putBoolean("BOOLEAN", true)
+							.putString("STRING", "Some Test String")
+							.putLong("LONG", 181123L)
+							.putInt("INTEGER", 99121)
+							.apply();
+		assertEquals(1.5f, encryptedPreferences.getFloat("FLOAT", 10f), 0f);
+		assertTrue(encryptedPreferences.getBoolean("BOOLEAN", false));
+		assertEquals("Some Test String", encryptedPreferences.getString("STRING", null));
+		assertEquals(181123L, encryptedPreferences.getLong("LONG", 0L));
+		assertEquals(99121, encryptedPreferences.getInt("INTEGER", -1));
+		assertEquals("99121", encryptedPreferences.getString("INTEGER", null));
+	}
+
+	@Test
+	public void testTextValuesReadable() {
+		EncryptedPreferences textPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																						.withPreferenceName(getClass().getSimpleName())
+																						.build();
+		textPreferences.edit().putInt("INTEGER", 42).putString("STRING", "text").apply();
+		assertEquals(42, encryptedPreferences.getInt("INTEGER", -1));
+		assertEquals("text", encryptedPreferences.getString("STRING", null));
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.pddstudio.preferences.encrypted;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure values written with an authenticated {@link CipherSuite} can be read back and values written with AES-CBC are still readable.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CipherSuiteTest {
+
+	Context         context;
+	InMemoryStorage storage;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getContext();
+		storage = new InMemoryStorage();
+	}
+
+	private EncryptedPreferences build(CipherSuite cipherSuite) {
+		return new EncryptedPreferences.Builder(context).withEncryptionPassword("test").withStorage(storage).withCipherSuite(cipherSuite).build();
+	}
+
+	@Test
+	public void testAuthenticatedSuites() {
+		for (CipherSuite cipherSuite : CipherSuite.values()) {
+			if (!cipherSuite.isSupported()) {
+				continue;
+			}
+			EncryptedPreferences encryptedPreferences = build(cipherSuite);
+			encryptedPreferences.edit().clear().putString("STRING", "value").putInt("INTEGER", 42).commit();
+			assertEquals("value", encryptedPreferences.getString("STRING", null));
+			assertEquals(42, encryptedPreferences.getInt("INTEGER", -1));
+			assertTrue(encryptedPreferences.getAllKeys().contains("STRING"));
+		}
+	}
+
+	@Test
+	public void testRandomNonce() {
+		EncryptedPreferences encryptedPreferences = build(CipherSuite.AES_GCM);
+		encryptedPreferences.edit().putString("FIRST", "value").putString("SECOND", "value").commit();
+		assertEquals(2, storage.getAll().size());
+		Object[] encryptedValues = storage.getAll().values().toArray();
+		assertFalse(encryptedValues[0].equals(encryptedValues[1]));
+	}
+
+	@Test
+	public void testCbcValuesReadable() {
+		build(CipherSuite.AES_CBC).edit().putString("CBC", "legacy").commit();
+		EncryptedPreferences encryptedPreferences = build(CipherSuite.AES_GCM);
+		encryptedPreferences.edit().putString("GCM", "new").commit();
+		assertEquals("legacy", encryptedPreferences.getString("CBC", null));
+		assertEquals("new", build(CipherSuite.AES_CBC).getString("GCM", null));
+		assertEquals(2, encryptedPreferences.getAll().size());
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.pddstudio.preferences.encrypted;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Hammers the read and write paths from several threads at once to make sure the per-thread ciphers don't corrupt each other.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrencyTest {
+
+	private static final int THREAD_COUNT = 8;
+	private static final int ITERATIONS   = 200;
+
+	Context              context;
+	EncryptedPreferences encryptedPreferences;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getContext();
+		encryptedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test").withPreferenceName(getClass().getSimpleName()).build();
+		encryptedPreferences.edit().clear().apply();
+	}
+
+	@Test
+	public void testConcurrentPutAndGetInt() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			final String key = "INTEGER_" + t;
+			final int offset = t * ITERATIONS;
+			results.add(executorService.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int mismatches = 0;
+					for (int i = 0; i < ITERATIONS; i++) {
+						encryptedPreferences.edit().putInt(key, offset + i).apply();
+						if (encryptedPreferences.getInt(key, -1) != offset + i) {
+							mismatches++;
+						}
+					}
+					return mismatches;
+				}
+			}));
+		}
+		for (Future<Integer> result : results) {
+			assertEquals(0, result.get().intValue());
+		}
+		executorService.shutdown();
+
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			assertEquals(t * ITERATIONS + ITERATIONS - 1, encryptedPreferences.getInt("INTEGER_" + t, -1));
+		}
+	}
+
+}
@@ -65,6 +65,18 @@ public class EncryptedEditorTest {
 		assertTrue(encryptedPreferences.getAllKeys().isEmpty());
 	}
 
+	@Test
+	public void testIndependentEditors() {
+		EncryptedPreferences.EncryptedEditor first = encryptedPreferences.edit();
+		EncryptedPreferences.EncryptedEditor second = encryptedPreferences.edit();
+		first.putString("FIRST", "first");
+		second.putString("SECOND", "second").apply();
+		assertFalse(encryptedPreferences.contains("FIRST"));
+		assertTrue(encryptedPreferences.contains("SECOND"));
+		first.apply();
+		assertTrue(encryptedPreferences.contains("FIRST"));
+	}
+
 	@Test
 	public void testRemoveValue() {
 		String key = "TEST_REMOVE_VALUE";
@@ -74,4 +86,16 @@ public class EncryptedEditorTest {
 		assertFalse(encryptedPreferences.contains(key));
 	}
 
+	@Test
+	public void testAppliedValuesVisibleBeforeCommit() {
+		String key = "TEST_PENDING_VALUE";
+		encryptedPreferences.edit().putString(key, "first").putString(key, "second").apply();
+		assertEquals("second", encryptedPreferences.getString(key, null));
+		assertEquals("second", encryptedPreferences.getAll().get(key));
+		assertTrue(encryptedPreferences.getAllKeys().contains(key));
+		assertTrue(encryptedPreferences.edit().remove(key).commit());
+		assertFalse(encryptedPreferences.contains(key));
+		assertFalse(encryptedPreferences.getAllKeys().contains(key));
+	}
+
 }
@@ -9,12 +9,27 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertNotSame;
 import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -135,6 +150,54 @@ public class EncryptedPreferencesTest {
 		assertEquals(encryptedPreferences.getInt("INTEGER", -1), 99121);
 	}
 
+	@Test
+	public void testGetAll() {
+		Map<String, ?> values = encryptedPreferences.getAll();
+		assertEquals(5, values.size());
+		assertEquals("Some Test String", values.get("STRING"));
+		assertEquals("99121", values.get("INTEGER"));
+	}
+
+	@Test
+	public void testGetAllFiltered() {
+		Map<String, ?> values = encryptedPreferences.getAll(new EncryptedPreferences.KeyFilter() {
+			@Override
+			public boolean accept(String key) {
+				return key.startsWith("L");
+			}
+		});
+		assertEquals(1, values.size());
+		assertEquals("181123", values.get("LONG"));
+	}
+
+	@Test
+	public void testGetAllWithExecutor() {
+		EncryptedPreferences.EncryptedEditor editor = encryptedPreferences.edit();
+		for (int i = 0; i < 500; i++) {
+			editor.putInt("BULK_" + i, i);
+		}
+		editor.apply();
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		Map<String, ?> values = encryptedPreferences.getAll(null, executorService);
+		executorService.shutdown();
+		assertEquals(505, values.size());
+		assertEquals("499", values.get("BULK_499"));
+	}
+
+	@Test
+	public void testGetAllKeysLargeStore() throws Exception {
+		EncryptedPreferences.EncryptedEditor editor = encryptedPreferences.edit();
+		for (int i = 0; i < 2000; i++) {
+			editor.putString("BULK_" + i, "value");
+		}
+		editor.apply();
+		Set<String> keys = encryptedPreferences.getAllKeys(true);
+		assertEquals(2005, keys.size());
+		assertTrue(keys.contains("BULK_1999"));
+		assertEquals(keys, encryptedPreferences.getAllKeysAsync(true).get());
+		assertEquals(2005, encryptedPreferences.getAllAsync(null).get().size());
+	}
+
 	@Test
 	public void testSharedPreferencesImport() {
 		encryptedPreferences.edit().clear().apply();
@@ -143,6 +206,31 @@ public class EncryptedPreferencesTest {
 		assertEquals(encryptedPreferences.getAllKeys().size(), preferences.getAll().size());
 	}
 
+	@Test
+	public void testSharedPreferencesImportResult() {
+		encryptedPreferences.edit().clear().apply();
+		SharedPreferences preferences = context.getSharedPreferences("mock_preferences_result", 0);
+		preferences.edit().clear().putInt("INTEGER", 7).putString("STRING", "value").putBoolean("BOOLEAN", true).commit();
+		encryptedPreferences.edit().putInt("INTEGER", 1).apply();
+
+		EncryptedPreferences.ImportResult result = encryptedPreferences.importSharedPreferences(preferences, false, true);
+		assertTrue(result.isSuccessful());
+		assertEquals(3, result.getTotalCount());
+		assertEquals(2, result.getImportedCount());
+		assertEquals(1, result.getSkippedCount());
+		assertEquals(2, result.getRemovedCount());
+		assertEquals(1, encryptedPreferences.getInt("INTEGER", -1));
+		assertEquals("value", encryptedPreferences.getString("STRING", null));
+		assertEquals(1, preferences.getAll().size());
+	}
+
+	@Test
+	public void testForceDeleteExistingPreferencesAsync() throws Exception {
+		assertNotSame(0, encryptedPreferences.getAllKeys(false).size());
+		assertTrue(encryptedPreferences.forceDeleteExistingPreferencesAsync().get());
+		assertSame(0, encryptedPreferences.getAllKeys(false).size());
+	}
+
 	@Test
 	public void testForceDeleteExistingPreferences() {
 		int storedPreferencesCount = encryptedPreferences.getAllKeys(false).size();
@@ -153,4 +241,173 @@ public class EncryptedPreferencesTest {
 		assertSame(0, newPreferencesCount);
 	}
 
+	@Test
+	public void testWarmup() throws Exception {
+		encryptedPreferences.edit().putString("STRING", "value").commit();
+		final AtomicBoolean notified = new AtomicBoolean();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		EncryptedPreferences warmPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																						.withPreferenceName(getClass().getSimpleName())
+																						.withValueCache(16)
+																						.withWarmup(executor, true)
+																						.withOnReadyListener(new EncryptedPreferences.OnReadyListener() {
+																							@Override
+																							public void onReady(EncryptedPreferences encryptedPreferences) {
+																								notified.set(true);
+																							}
+																						})
+																						.build();
+		assertTrue(warmPreferences.awaitReady(10, TimeUnit.SECONDS));
+		assertTrue(warmPreferences.isReady());
+		assertTrue(notified.get());
+		assertEquals("value", warmPreferences.getString("STRING", null));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testCustomStorage() {
+		InMemoryStorage storage = new InMemoryStorage();
+		EncryptedPreferences memoryPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test").withStorage(storage).build();
+		assertTrue(memoryPreferences.edit().putString("STRING", "value").putInt("INTEGER", 42).commit());
+		assertEquals(2, storage.getAll().size());
+		assertFalse(storage.contains("STRING"));
+		assertEquals("value", memoryPreferences.getString("STRING", null));
+		assertEquals(42, memoryPreferences.getInt("INTEGER", -1));
+	}
+
+	@Test
+	public void testShardedPreferences() {
+		EncryptedPreferences shardedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																						   .withPreferenceName("ShardedPreferencesTest")
+																						   .withShards(4)
+																						   .build();
+		shardedPreferences.edit().clear().putString("STRING", "value").putInt("INTEGER", 42).putBoolean("BOOLEAN", true).commit();
+		assertEquals("value", shardedPreferences.getString("STRING", null));
+		assertEquals(42, shardedPreferences.getInt("INTEGER", -1));
+		assertEquals(3, shardedPreferences.getAll().size());
+		shardedPreferences.edit().clear().commit();
+		assertTrue(shardedPreferences.getAllKeys().isEmpty());
+	}
+
+	@Test
+	public void testHashedKeys() {
+		InMemoryStorage storage = new InMemoryStorage();
+		EncryptedPreferences hashedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																						  .withStorage(storage)
+																						  .withHashedKeys(true)
+																						  .build();
+		assertTrue(hashedPreferences.edit().putString("STRING", "value").putInt("INTEGER", 42).commit());
+		for (String storedKey : storage.getAll().keySet()) {
+			assertEquals(22, storedKey.length());
+		}
+		assertEquals("value", hashedPreferences.getString("STRING", null));
+		assertEquals(42, hashedPreferences.getInt("INTEGER", -1));
+		assertTrue(hashedPreferences.contains("STRING"));
+		assertFalse(hashedPreferences.contains("MISSING"));
+
+		// a new instance can't use the remembered keys of the first one
+		EncryptedPreferences readPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																						.withStorage(storage)
+																						.withHashedKeys(true)
+																						.build();
+		assertEquals(new HashSet<String>(Arrays.asList("STRING", "INTEGER")), readPreferences.getAllKeys(true));
+		assertEquals("42", readPreferences.getAll().get("INTEGER"));
+		EncryptedPreferences otherPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("other")
+																						 .withStorage(storage)
+																						 .withHashedKeys(true)
+																						 .build();
+		assertNull(otherPreferences.getString("STRING", null));
+		assertTrue(otherPreferences.getAll().isEmpty());
+	}
+
+	@Test
+	public void testChangeListeners() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		MetricsRecorder recorder = new MetricsRecorder();
+		final List<String> changedKeys = Collections.synchronizedList(new ArrayList<String>());
+		EncryptedPreferences.OnSharedPreferenceChangeListener listener = new EncryptedPreferences.OnSharedPreferenceChangeListener() {
+			@Override
+			public void onSharedPreferenceChanged(EncryptedPreferences encryptedPreferences, String key) {
+				changedKeys.add(key);
+			}
+		};
+		EncryptedPreferences listenedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																							.withStorage(new InMemoryStorage())
+																							.withMetrics(recorder)
+																							.withListenerExecutor(executor)
+																							.withOnSharedPreferenceChangeListener(listener)
+																							.build();
+		listenedPreferences.registerOnSharedPreferenceChangeListener(listener);
+		listenedPreferences.registerOnSharedPreferenceChangeListener(new EncryptedPreferences.OnSharedPreferenceChangeListener() {
+			@Override
+			public void onSharedPreferenceChanged(EncryptedPreferences encryptedPreferences, String key) {
+				changedKeys.add(key.toLowerCase());
+			}
+		});
+		assertTrue(listenedPreferences.edit().putString("STRING", "value").commit());
+		// the change was handed to the executor before commit() returned, waiting for a later task waits for its delivery
+		executor.submit(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}).get();
+		assertEquals(Arrays.asList("STRING", "string"), changedKeys);
+		assertEquals(2, recorder.snapshot().count(MetricsSink.Operation.LISTENER_DISPATCH));
+
+		listenedPreferences.unregisterOnSharedPreferenceChangeListener(listener);
+		assertTrue(listenedPreferences.edit().putInt("INTEGER", 42).commit());
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("STRING", "string", "integer"), changedKeys);
+	}
+
+	@Test
+	public void testChangeListenerOffWriterThread() throws Exception {
+		final CountDownLatch notified = new CountDownLatch(1);
+		final AtomicReference<String> listenerThread = new AtomicReference<>();
+		EncryptedPreferences listenedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																							.withStorage(new InMemoryStorage())
+																							.build();
+		listenedPreferences.registerOnSharedPreferenceChangeListener(new EncryptedPreferences.OnSharedPreferenceChangeListener() {
+			@Override
+			public void onSharedPreferenceChanged(EncryptedPreferences encryptedPreferences, String key) {
+				if ("STRING".equals(key)) {
+					listenerThread.set(Thread.currentThread().getName());
+					// would wait for itself if it was called on the writer thread
+					encryptedPreferences.edit().putBoolean("BOOLEAN", true).commit();
+					notified.countDown();
+				}
+			}
+		});
+		listenedPreferences.edit().putString("STRING", "value").apply();
+		assertTrue(notified.await(10, TimeUnit.SECONDS));
+		assertTrue(listenerThread.get().startsWith("EncryptedPreferences-listener"));
+		assertTrue(listenedPreferences.getBoolean("BOOLEAN", false));
+	}
+
+	@Test
+	public void testChangeListenerExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		final CountDownLatch notified = new CountDownLatch(1);
+		final AtomicReference<String> changedKey = new AtomicReference<>();
+		final AtomicReference<Thread> listenerThread = new AtomicReference<>();
+		EncryptedPreferences listenedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																							.withStorage(new InMemoryStorage())
+																							.withListenerExecutor(executor)
+																							.build();
+		listenedPreferences.registerOnSharedPreferenceChangeListener(new EncryptedPreferences.OnSharedPreferenceChangeListener() {
+			@Override
+			public void onSharedPreferenceChanged(EncryptedPreferences encryptedPreferences, String key) {
+				changedKey.set(key);
+				listenerThread.set(Thread.currentThread());
+				notified.countDown();
+			}
+		});
+		listenedPreferences.edit().putBoolean("BOOLEAN", true).apply();
+		assertTrue(notified.await(10, TimeUnit.SECONDS));
+		assertEquals("BOOLEAN", changedKey.get());
+		assertNotSame(Thread.currentThread(), listenerThread.get());
+		executor.shutdown();
+	}
+
 }
@@ -9,6 +9,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * Created by pddstudio on 13/09/16.
@@ -40,4 +41,16 @@ public class UtilsTest {
 		assertEquals(VALUE_UNENCRYPTED, decrypted);
 	}
 
+	@Test
+	public void testUrlSafeStringEncryption() {
+		EncryptedPreferences urlSafePreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																						  .withPreferenceName(getClass().getSimpleName() + "_url_safe")
+																						  .withUrlSafeEncoding(true)
+																						  .build();
+		String encrypted = urlSafePreferences.getUtils().encryptStringValue(VALUE_UNENCRYPTED);
+		assertFalse(encrypted.contains("x0P"));
+		assertEquals("2-Q-mRkVOU5DIM1XLHI77PM7eIPXPn4wHzvdmTeIzD8", encrypted);
+		assertEquals(VALUE_UNENCRYPTED, urlSafePreferences.getUtils().decryptStringValue(encrypted));
+	}
+
 }
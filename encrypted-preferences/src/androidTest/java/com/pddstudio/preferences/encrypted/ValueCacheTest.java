@@ -0,0 +1,78 @@
+package com.pddstudio.preferences.encrypted;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure cached values are invalidated whenever they are modified.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ValueCacheTest {
+
+	Context              context;
+	EncryptedPreferences encryptedPreferences;
+
+	@Before
+	public void setup() {
+		context = InstrumentationRegistry.getContext();
+		encryptedPreferences = new EncryptedPreferences.Builder(context).withEncryptionPassword("test")
+																		.withPreferenceName(getClass().getSimpleName())
+																		.withValueCache(16)
+																		.build();
+		encryptedPreferences.edit().clear().apply();
+	}
+
+	@Test
+	public void testCachedValueUpdated() {
+		encryptedPreferences.edit().putString("STRING", "first").apply();
+		assertEquals("first", encryptedPreferences.getString("STRING", null));
+		encryptedPreferences.edit().putString("STRING", "second").apply();
+		assertEquals("second", encryptedPreferences.getString("STRING", null));
+	}
+
+	@Test
+	public void testCachedMissingValueUpdated() {
+		assertFalse(encryptedPreferences.getBoolean("BOOLEAN", false));
+		encryptedPreferences.edit().putBoolean("BOOLEAN", true).commit();
+		assertTrue(encryptedPreferences.getBoolean("BOOLEAN", false));
+	}
+
+	@Test
+	public void testCachedValueRemoved() {
+		encryptedPreferences.edit().putInt("INTEGER", 42).apply();
+		assertEquals(42, encryptedPreferences.getInt("INTEGER", -1));
+		encryptedPreferences.edit().remove("INTEGER").apply();
+		assertEquals(-1, encryptedPreferences.getInt("INTEGER", -1));
+	}
+
+	@Test
+	public void testCachedValuesCleared() {
+		encryptedPreferences.edit().putLong("LONG", 7L).apply();
+		assertEquals(7L, encryptedPreferences.getLong("LONG", 0L));
+		encryptedPreferences.edit().clear().apply();
+		assertNull(encryptedPreferences.getString("LONG", null));
+		assertEquals(0L, encryptedPreferences.getLong("LONG", 0L));
+	}
+
+	@Test
+	public void testPrefetchedValueUpdated() throws Exception {
+		encryptedPreferences.edit().putString("STRING", "first").putInt("INTEGER", 42).commit();
+		encryptedPreferences.prefetch("STRING", "INTEGER", "MISSING").get();
+		assertEquals("first", encryptedPreferences.getStringAsync("STRING", null).get());
+		assertEquals(Integer.valueOf(42), encryptedPreferences.getIntAsync("INTEGER", -1).get());
+		assertNull(encryptedPreferences.getStringAsync("MISSING", null).get());
+		encryptedPreferences.edit().putString("STRING", "second").commit();
+		assertEquals("second", encryptedPreferences.getStringAsync("STRING", null).get());
+	}
+
+}
@@ -6,23 +6,37 @@ import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.scottyab.aescrypt.AESCrypt;
-
-import java.security.GeneralSecurityException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An AES-256 encrypted {@linkplain SharedPreferences} class, to read and write encrypted preferences.
+ * The encryption itself is done by an {@link EncryptedStore}, this class adds the Android specific parts on top of it.
  */
 public final class EncryptedPreferences {
 
 	private static final String TAG = EncryptedPreferences.class.getSimpleName();
 	private static EncryptedPreferences encryptedPreferences;
 	private static EncryptedPreferences singletonInstance;
+	private static ExecutorService      writerListenerExecutor;
+
+	static {
+		Logger.setPrinter(new Logger.Printer() {
+			@Override
+			public void print(String tag, String message) {
+				Log.d(tag, message);
+			}
+		});
+	}
 
 	/**
 	 * Interface definition for a callback to be invoked when a shared
@@ -34,7 +48,9 @@ public final class EncryptedPreferences {
 		 * Called when a shared preference is changed, added, or removed. This
 		 * may be called even if a preference is set to its existing value.
 		 *
-		 * <p>This callback will be run on your main thread.
+		 * <p>This callback will be run on your main thread when the preferences are stored in {@linkplain SharedPreferences}. Changes which
+		 * other storages report on the background writer thread are delivered on a separate listener thread instead. Both can be replaced by
+		 * an {@linkplain Executor} configured with {@link Builder#withListenerExecutor(Executor)}.
 		 *
 		 * @param encryptedPreferences The {@link EncryptedPreferences} that received
 		 *            the change.
@@ -44,6 +60,31 @@ public final class EncryptedPreferences {
 		void onSharedPreferenceChanged(EncryptedPreferences encryptedPreferences, String key);
 	}
 
+	/**
+	 * Interface definition for a callback to be invoked while unencrypted preferences are imported.
+	 */
+	public interface ImportProgressListener extends EncryptedStore.ImportProgressListener {
+	}
+
+	/**
+	 * Interface definition for a callback to be invoked once an {@link EncryptedPreferences} instance is ready to be read.
+	 */
+	public interface OnReadyListener {
+
+		/**
+		 * Called once the background warm-up configured with {@link Builder#withWarmup(Executor)} finished, on the warm-up thread.
+		 * Without a warm-up, this is called right away while the instance is built.
+		 * @param encryptedPreferences The {@link EncryptedPreferences} instance which is ready.
+		 */
+		void onReady(EncryptedPreferences encryptedPreferences);
+	}
+
+	/**
+	 * Interface definition for a filter which decides whether a preference should be included in a bulk read or not.
+	 */
+	public interface KeyFilter extends EncryptedStore.KeyFilter {
+	}
+
 	/**
 	 * Retrieve an {@link EncryptedPreferences} instance with all default settings.
 	 * @deprecated Due to security reasons it's recommended to use {@link Builder} for instance creation instead.
@@ -70,211 +111,141 @@ public final class EncryptedPreferences {
 		return singletonInstance;
 	}
 
-	private final SharedPreferences                          sharedPreferences;
-	private final String                                     cryptoKey;
-	private final EncryptedEditor                            encryptedEditor;
-	private final Utils                                      utils;
-	private final boolean                                    printDebugMessages;
-	private final List<OnSharedPreferenceChangeListenerImpl> listeners;
+	private final EncryptedStore                                         store;
+	private final Utils                                                  utils;
+	private final Logger                                                 logger;
+	private final CopyOnWriteArrayList<OnSharedPreferenceChangeListener> listeners;
+	private final ListenerBridge                                         listenerBridge;
+	private final Executor                                               listenerExecutor;
+	private final CountDownLatch                                         readyLatch;
 
 	private EncryptedPreferences(Builder builder) {
-		this.sharedPreferences = TextUtils.isEmpty(builder.prefsName) ? PreferenceManager.getDefaultSharedPreferences(builder.context) : builder.context
-				.getSharedPreferences(
-				builder.prefsName,
-				0);
-		if (TextUtils.isEmpty(builder.encryptionPassword)) {
-			throw new RuntimeException("Unable to initialize EncryptedPreferences! Did you forget to set a password using Builder.withEncryptionPassword" + "" +
-											   "(encryptionKey) ?");
-		} else {
-			this.cryptoKey = builder.encryptionPassword;
+		boolean debugMessages = builder.context.getResources().getBoolean(R.bool.enable_debug_messages);
+		this.logger = new Logger(TAG, debugMessages);
+		if (builder.storeBuilder.storage() == null) {
+			builder.storeBuilder.withStorage(openSharedPreferencesStorage(builder));
 		}
-		this.encryptedEditor = new EncryptedEditor(this);
+		this.store = builder.storeBuilder.withDebugMessages(debugMessages).build();
 		this.utils = new Utils(this);
-		this.printDebugMessages = builder.context.getResources().getBoolean(R.bool.enable_debug_messages);
-		this.listeners = new ArrayList<>();
+		this.listeners = new CopyOnWriteArrayList<>();
+		this.listenerBridge = new ListenerBridge();
+		this.listenerExecutor = builder.listenerExecutor;
 		if (!builder.listeners.isEmpty()) {
 			for (OnSharedPreferenceChangeListener listener : builder.listeners) {
 				registerListener(listener);
 			}
 		}
 		singletonInstance = builder.singleton ? this : null;
-	}
-
-	private synchronized void log(String logMessage) {
-		if (printDebugMessages) {
-			Log.d(TAG, logMessage);
-		}
-	}
-
-	private void registerListener(OnSharedPreferenceChangeListener listener) {
-		if (checkIfListenerExist(listener)) {
-			log("registerListener() : " + listener + " is already registered - skip adding.");
+		this.readyLatch = new CountDownLatch(1);
+		if (builder.warmupExecutor == null) {
+			onReady(builder.readyListeners);
 		} else {
-			OnSharedPreferenceChangeListenerImpl listenerImpl = new OnSharedPreferenceChangeListenerImpl(this, listener);
-			sharedPreferences.registerOnSharedPreferenceChangeListener(listenerImpl);
-			listeners.add(listenerImpl);
-			log("registerListener() : interface registered: " + listener + " ");
-		}
-	}
-
-	private void unregisterListener(OnSharedPreferenceChangeListener listener) {
-		if (checkIfListenerExist(listener)) {
-			OnSharedPreferenceChangeListenerImpl listenerImpl = getListenerImpl(listener);
-			sharedPreferences.unregisterOnSharedPreferenceChangeListener(listenerImpl);
-			removeListenerImpl(listener);
-			log("unregisterListener() : " + listenerImpl + " ( interface: " + listener + " )");
-		} else {
-			log("unregisterListener() : unable to find registered listener ( " + listener + ")");
+			final boolean preloadValues = builder.preloadValues;
+			final List<OnReadyListener> readyListeners = new ArrayList<>(builder.readyListeners);
+			builder.warmupExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						store.warmUp(preloadValues);
+					} finally {
+						onReady(readyListeners);
+					}
+				}
+			});
 		}
 	}
 
-	private OnSharedPreferenceChangeListenerImpl getListenerImpl(OnSharedPreferenceChangeListener listener) {
-		for (OnSharedPreferenceChangeListenerImpl listenerImpl : listeners) {
-			if (listener.equals(listenerImpl.getListenerInterface())) {
-				return listenerImpl;
-			}
+	/**
+	 * Retrieve the shared executor which notifies listeners of changes reported on the writer thread, so a listener can't hold up (or wait for)
+	 * the writes of all instances. A single thread keeps the changes in order.
+	 * @return The shared single-threaded {@linkplain ExecutorService}
+	 */
+	private static synchronized ExecutorService writerListenerExecutor() {
+		if (writerListenerExecutor == null) {
+			writerListenerExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("EncryptedPreferences-listener"));
 		}
-		return null;
+		return writerListenerExecutor;
 	}
 
-	private boolean checkIfListenerExist(OnSharedPreferenceChangeListener changeListener) {
-		for (OnSharedPreferenceChangeListenerImpl listenerImpl : listeners) {
-			if (changeListener.equals(listenerImpl.getListenerInterface())) {
-				log("checkListener() : " + changeListener + " found implementation: " + listenerImpl);
-				return true;
-			}
+	private static PreferenceStorage openSharedPreferencesStorage(Builder builder) {
+		if (builder.shardCount <= 1) {
+			return new SharedPreferencesStorage(TextUtils.isEmpty(builder.prefsName) ? PreferenceManager.getDefaultSharedPreferences(builder.context) : builder.context
+					.getSharedPreferences(
+					builder.prefsName,
+					0));
 		}
-		return false;
-	}
-
-	private void removeListenerImpl(OnSharedPreferenceChangeListener listener) {
-		log("removeListenerImpl() : requested for " + listener);
-		for (int i = 0; i < listeners.size(); i++) {
-			OnSharedPreferenceChangeListenerImpl listenerImpl = listeners.get(i);
-			if (listener.equals(listenerImpl.getListenerInterface())) {
-				listeners.remove(i);
-				log("removeListenerImpl() : removed listener at position: " + i);
-			}
+		// same name as the default SharedPreferences used by PreferenceManager
+		String prefsName = TextUtils.isEmpty(builder.prefsName) ? builder.context.getPackageName() + "_preferences" : builder.prefsName;
+		List<PreferenceStorage> shards = new ArrayList<>(builder.shardCount);
+		for (int i = 0; i < builder.shardCount; i++) {
+			shards.add(new SharedPreferencesStorage(builder.context.getSharedPreferences(prefsName + "_shard" + i, 0)));
 		}
+		return new ShardedStorage(shards);
 	}
 
-	private void printListeners() {
-		if (listeners.isEmpty()) {
-			log("printListeners() => no listeners found");
-		} else {
-			for (OnSharedPreferenceChangeListenerImpl listenerImpl : listeners) {
-				log("printListeners() => " + listenerImpl);
+	private void onReady(List<OnReadyListener> readyListeners) {
+		try {
+			for (OnReadyListener readyListener : readyListeners) {
+				readyListener.onReady(this);
 			}
+		} finally {
+			readyLatch.countDown();
 		}
 	}
 
-	private void removeExistingPreferenceKey(String preferenceKey) {
-		removeExistingPreferenceKeys(preferenceKey);
+	/**
+	 * Checks whether the background warm-up configured with {@link Builder#withWarmup(Executor)} finished.
+	 * @return Returns true if the warm-up finished or no warm-up was configured, otherwise false.
+	 */
+	public boolean isReady() {
+		return readyLatch.getCount() == 0;
 	}
 
-	private void removeExistingPreferenceKeys(String... preferenceKeys) {
-		Set<String> targetEntries = new HashSet<>();
-		for(String key : preferenceKeys) {
-			if (sharedPreferences.contains(key)) {
-				targetEntries.add(key);
-			} else {
-				log("removeExistingPreferenceKey() : Couldn't find key '" + key + "' ! Skipping...");
-			}
-		}
-		SharedPreferences.Editor batchEditor = sharedPreferences.edit();
-		for(String targetKey : targetEntries) {
-			batchEditor.remove(targetKey);
-		}
-		batchEditor.apply();
+	/**
+	 * Waits until the background warm-up configured with {@link Builder#withWarmup(Executor)} finished. Returns immediately if no warm-up was
+	 * configured.
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 */
+	public void awaitReady() throws InterruptedException {
+		readyLatch.await();
 	}
 
-	private String encryptString(String message) {
-		try {
-			String encString = AESCrypt.encrypt(cryptoKey, message);
-			return encodeCharset(encString);
-		} catch (GeneralSecurityException e) {
-			e.printStackTrace();
-			return null;
-		}
+	/**
+	 * Waits until the background warm-up configured with {@link Builder#withWarmup(Executor)} finished, or the given timeout elapsed.
+	 * @param timeout - The maximum time to wait
+	 * @param unit - The {@linkplain TimeUnit} of the timeout
+	 * @return Returns true if the warm-up finished, or false if the timeout elapsed before.
+	 * @throws InterruptedException if the current thread was interrupted while waiting
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return readyLatch.await(timeout, unit);
 	}
 
-	private String decryptString(String message) {
-		try {
-			String decString = removeEncoding(message);
-			return AESCrypt.decrypt(cryptoKey, decString);
-		} catch (GeneralSecurityException e) {
-			return null;
+	private void registerListener(OnSharedPreferenceChangeListener listener) {
+		synchronized (listeners) {
+			if (!listeners.addIfAbsent(listener)) {
+				logger.d("registerListener() : {} is already registered - skip adding.", listener);
+				return;
+			}
+			// the bridge is only registered while there are listeners, so changes aren't decrypted for nobody
+			if (listeners.size() == 1) {
+				store.storage().registerListener(listenerBridge);
+			}
 		}
+		logger.d("registerListener() : interface registered: {} ", listener);
 	}
 
-	private String removeEncoding(String value) {
-		String encodedString = value;
-		encodedString = encodedString.replaceAll("x0P1Xx", "\\+").replaceAll("x0P2Xx", "/").replaceAll("x0P3Xx", "=");
-		log("removeEncoding() : " + value + " => " + encodedString);
-		return encodedString;
-	}
-
-	private String encodeCharset(String value) {
-		String encodedString = value;
-		encodedString = encodedString.replaceAll("\\+", "x0P1Xx").replaceAll("/", "x0P2Xx").replaceAll("=", "x0P3Xx");
-		log("encodeCharset() : " + value + " => " + encodedString);
-		return encodedString;
-	}
-
-	private boolean containsEncryptedKey(String encryptedKey) {
-		return sharedPreferences.contains(encryptedKey);
-	}
-
-	private <T> Object decryptType(String key, Object type, T defaultType) {
-		String encKey = encryptString(key);
-
-		log("decryptType() => encryptedKey => " + encKey);
-
-		if (TextUtils.isEmpty(encKey) || !containsEncryptedKey(encKey)) {
-			log("unable to encrypt or find key => " + encKey);
-			return defaultType;
-		}
-
-		String value = sharedPreferences.getString(encKey, null);
-
-		log("decryptType() => encryptedValue => " + value);
-
-		if (TextUtils.isEmpty(value)) {
-			return defaultType;
-		}
-
-		String orgValue = decryptString(value);
-		log("decryptType() => orgValue => " + orgValue);
-
-		if (TextUtils.isEmpty(orgValue)) {
-			return defaultType;
-		}
-
-		if (type instanceof String) {
-			return orgValue;
-		} else if (type instanceof Integer) {
-			try {
-				return Integer.parseInt(orgValue);
-			} catch (NumberFormatException e) {
-				return defaultType;
-			}
-		} else if (type instanceof Long) {
-			try {
-				return Long.parseLong(orgValue);
-			} catch (NumberFormatException e) {
-				return defaultType;
+	private void unregisterListener(OnSharedPreferenceChangeListener listener) {
+		synchronized (listeners) {
+			if (!listeners.remove(listener)) {
+				logger.d("unregisterListener() : unable to find registered listener ( {})", listener);
+				return;
 			}
-		} else if (type instanceof Float) {
-			try {
-				return Float.parseFloat(orgValue);
-			} catch (NumberFormatException e) {
-				return defaultType;
+			if (listeners.isEmpty()) {
+				store.storage().unregisterListener(listenerBridge);
 			}
-		} else if (type instanceof Boolean) {
-			return Boolean.parseBoolean(orgValue);
-		} else {
-			return defaultType;
 		}
+		logger.d("unregisterListener() : interface unregistered: {}", listener);
 	}
 
 	/**
@@ -285,7 +256,7 @@ public final class EncryptedPreferences {
 	 * int.
 	 */
 	public int getInt(String key, int defaultValue) {
-		return (Integer) decryptType(key, 0, defaultValue);
+		return store.getInt(key, defaultValue);
 	}
 
 	/**
@@ -296,7 +267,7 @@ public final class EncryptedPreferences {
 	 * long
 	 */
 	public long getLong(String key, long defaultValue) {
-		return (Long) decryptType(key, 0L, defaultValue);
+		return store.getLong(key, defaultValue);
 	}
 
 	/**
@@ -307,7 +278,7 @@ public final class EncryptedPreferences {
 	 * boolean
 	 */
 	public boolean getBoolean(String key, boolean defaultValue) {
-		return (Boolean) decryptType(key, defaultValue, defaultValue);
+		return store.getBoolean(key, defaultValue);
 	}
 
 	/**
@@ -318,7 +289,7 @@ public final class EncryptedPreferences {
 	 * float
 	 */
 	public float getFloat(String key, float defaultValue) {
-		return (Float) decryptType(key, 0f, defaultValue);
+		return store.getFloat(key, defaultValue);
 	}
 
 	/**
@@ -329,7 +300,74 @@ public final class EncryptedPreferences {
 	 * a String
 	 */
 	public String getString(String key, String defaultValue) {
-		return (String) decryptType(key, "", defaultValue);
+		return store.getString(key, defaultValue);
+	}
+
+	/**
+	 * Asynchronously retrieve a String value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getString(String, String)
+	 */
+	public Future<String> getStringAsync(String key, String defaultValue) {
+		return store.getStringAsync(key, defaultValue);
+	}
+
+	/**
+	 * Asynchronously retrieve an int value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getInt(String, int)
+	 */
+	public Future<Integer> getIntAsync(String key, int defaultValue) {
+		return store.getIntAsync(key, defaultValue);
+	}
+
+	/**
+	 * Asynchronously retrieve a long value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getLong(String, long)
+	 */
+	public Future<Long> getLongAsync(String key, long defaultValue) {
+		return store.getLongAsync(key, defaultValue);
+	}
+
+	/**
+	 * Asynchronously retrieve a float value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getFloat(String, float)
+	 */
+	public Future<Float> getFloatAsync(String key, float defaultValue) {
+		return store.getFloatAsync(key, defaultValue);
+	}
+
+	/**
+	 * Asynchronously retrieve a boolean value from the preferences. The value is decrypted on a small, shared pool of background threads.
+	 * @param key - The name of the preference to retrieve
+	 * @param defaultValue - Value to return if this preference does not exist
+	 * @return A {@linkplain Future} which provides the preference value if it exists, or defValue once available.
+	 * @see #getBoolean(String, boolean)
+	 */
+	public Future<Boolean> getBooleanAsync(String key, boolean defaultValue) {
+		return store.getBooleanAsync(key, defaultValue);
+	}
+
+	/**
+	 * Decrypts the values of the given keys on a small, shared pool of background threads, so later reads don't have to decrypt them again.
+	 * Call this early (e.g. in {@code Application.onCreate()}) for keys which are needed right away, like the ones read while drawing the first frame.
+	 * The decrypted values are kept in the value cache (see {@link Builder#withValueCache(int)}). Without a configured cache, the first call
+	 * enables one for {@code 64} values, or for all given keys if there are more.
+	 * @param keys - The names of the preferences to decrypt
+	 * @return A {@linkplain Future} which completes once all values are decrypted.
+	 */
+	public Future<?> prefetch(String... keys) {
+		return store.prefetch(keys);
 	}
 
 	/**
@@ -338,14 +376,17 @@ public final class EncryptedPreferences {
 	 * @return {@linkplain Set<String>} - Set with all stored keys.
 	 */
 	public Set<String> getAllKeys(boolean decrypt) {
-		if(decrypt) {
-			Set<String> decryptedKeySet = new HashSet<>();
-			for(String key : sharedPreferences.getAll().keySet()) {
-				decryptedKeySet.add(decryptString(key));
-			}
-			return decryptedKeySet;
-		}
-		return sharedPreferences.getAll().keySet();
+		return store.getAllKeys(decrypt);
+	}
+
+	/**
+	 * Asynchronously retrieve a {@linkplain Set<String>} of all currently stored keys.
+	 * Large preferences are decrypted in parallel on a small, shared pool of background threads.
+	 * @param decrypt - Whether to decrypt stored keys before returning them or not.
+	 * @return A {@linkplain Future} which provides the Set with all stored keys once available.
+	 */
+	public Future<Set<String>> getAllKeysAsync(boolean decrypt) {
+		return store.getAllKeysAsync(decrypt);
 	}
 
 	/**
@@ -353,7 +394,50 @@ public final class EncryptedPreferences {
 	 * @return {@linkplain Set<String>} - Set with all stored keys.
 	 */
 	public Set<String> getAllKeys() {
-		return getAllKeys(true);
+		return store.getAllKeys();
+	}
+
+	/**
+	 * Retrieve all values from the preferences.
+	 * Values written in the text format are returned as String, values written in the binary format keep their type.
+	 * @return Map - Returns a map containing the decrypted key/value pairs representing the preferences.
+	 */
+	public Map<String, ?> getAll() {
+		return store.getAll();
+	}
+
+	/**
+	 * Retrieve all values from the preferences whose key is accepted by the given {@link KeyFilter}.
+	 * @param keyFilter - The {@link KeyFilter} to apply, or null to retrieve all values
+	 * @return Map - Returns a map containing the decrypted key/value pairs representing the preferences.
+	 * @see #getAll()
+	 */
+	public Map<String, ?> getAll(KeyFilter keyFilter) {
+		return store.getAll(keyFilter);
+	}
+
+	/**
+	 * Retrieve all values from the preferences whose key is accepted by the given {@link KeyFilter}.
+	 * The underlying preferences are read once and decrypted in a single pass. For large preferences the decryption is split into chunks which
+	 * are run on the given {@linkplain Executor}, while the calling thread waits for the result.
+	 * @param keyFilter - The {@link KeyFilter} to apply, or null to retrieve all values
+	 * @param executor - The {@linkplain Executor} to decrypt chunks on, or null to decrypt everything on the calling thread
+	 * @return Map - Returns a map containing the decrypted key/value pairs representing the preferences.
+	 * @see #getAll()
+	 */
+	public Map<String, ?> getAll(KeyFilter keyFilter, Executor executor) {
+		return store.getAll(keyFilter, executor);
+	}
+
+	/**
+	 * Asynchronously retrieve all values from the preferences whose key is accepted by the given {@link KeyFilter}.
+	 * The preferences are decrypted on a small, shared pool of background threads.
+	 * @param keyFilter - The {@link KeyFilter} to apply, or null to retrieve all values
+	 * @return A {@linkplain Future} which provides the map containing the decrypted key/value pairs once available.
+	 * @see #getAll(KeyFilter, Executor)
+	 */
+	public Future<Map<String, ?>> getAllAsync(KeyFilter keyFilter) {
+		return store.getAllAsync(keyFilter);
 	}
 
 	/**
@@ -362,18 +446,18 @@ public final class EncryptedPreferences {
 	 * @return Returns true if the preference exists in the preferences, otherwise false.
 	 */
 	public boolean contains(String key) {
-		String encKey = encryptString(key);
-		return sharedPreferences.contains(encKey);
+		return store.contains(key);
 	}
 
 	/**
 	 * Get the Editor for these preferences, through which you can make modifications to the data in the preferences and atomically commit those changes
 	 * back to
 	 * the SharedPreferences object.
+	 * Every call returns a new, independent {@link EncryptedEditor}, so concurrent writers don't interfere with each other's pending changes.
 	 * @return {@link EncryptedEditor}
 	 */
 	public EncryptedEditor edit() {
-		return encryptedEditor;
+		return new EncryptedEditor(store.edit());
 	}
 
 	/**
@@ -390,9 +474,11 @@ public final class EncryptedPreferences {
 	 *
 	 * @param sharedPreferences - The unencrypted {@linkplain SharedPreferences} instance
 	 * @param override - Whether to override existing keys (and their values) or not
+	 * @return The {@link ImportResult} of this import
+	 * @see #importSharedPreferences(SharedPreferences, boolean, boolean, ImportProgressListener)
 	 */
-	public void importSharedPreferences(SharedPreferences sharedPreferences, boolean override) {
-		importSharedPreferences(sharedPreferences, override, false);
+	public ImportResult importSharedPreferences(SharedPreferences sharedPreferences, boolean override) {
+		return importSharedPreferences(sharedPreferences, override, false);
 	}
 
 	/**
@@ -402,27 +488,47 @@ public final class EncryptedPreferences {
 	 * @param sharedPreferences - The unencrypted {@linkplain SharedPreferences} instance
 	 * @param override - Whether to override existing keys (and their values) or not
 	 * @param removeAfter - Whether to remove the old unencrypted entries after encrypting or not
+	 * @return The {@link ImportResult} of this import
+	 * @see #importSharedPreferences(SharedPreferences, boolean, boolean, ImportProgressListener)
 	 */
-	public void importSharedPreferences(SharedPreferences sharedPreferences, boolean override, boolean removeAfter) {
-		if (sharedPreferences != null) {
-			Map<String, ?> values = sharedPreferences.getAll();
-			int importCount = 0;
-			for (String key : values.keySet()) {
-				if (!contains(key) || (contains(key) && override)) {
-					log("-> Importing key: " + key);
-					encryptedEditor.putValue(key, String.valueOf(values.get(key)));
-					encryptedEditor.apply();
-					++importCount;
-					if(removeAfter && contains(key)) {
-						sharedPreferences.edit().remove(key).apply();
-						log("-> Deleted entry for key : " + key);
-					}
-				} else {
-					log("-> Skip import for " + key + " : key already exist");
-				}
+	public ImportResult importSharedPreferences(SharedPreferences sharedPreferences, boolean override, boolean removeAfter) {
+		return importSharedPreferences(sharedPreferences, override, removeAfter, null);
+	}
+
+	/**
+	 * Allows you to import your unencrypted {@linkplain SharedPreferences}.
+	 * All entries are encrypted first (large preferences in parallel) and written with a single commit afterwards, after all previously applied
+	 * changes. When requested, the imported
+	 * entries are removed from the unencrypted {@linkplain SharedPreferences} with a single commit as well.
+	 * This method blocks until all changes are written to disk, so consider calling it from a background thread.
+	 *
+	 * @param sharedPreferences - The unencrypted {@linkplain SharedPreferences} instance
+	 * @param override - Whether to override existing keys (and their values) or not
+	 * @param removeAfter - Whether to remove the old unencrypted entries after encrypting or not
+	 * @param progressListener - An optional {@link ImportProgressListener} to be notified about the encryption progress
+	 * @return The {@link ImportResult} of this import
+	 */
+	public ImportResult importSharedPreferences(SharedPreferences sharedPreferences, boolean override, boolean removeAfter,
+												ImportProgressListener progressListener) {
+		if (sharedPreferences == null) {
+			return new ImportResult(0, 0, 0, true);
+		}
+		Map<String, ?> values = sharedPreferences.getAll();
+		EncryptedStore.ImportedValues importedValues = store.importValues(values, override, progressListener);
+		List<String> importedKeys = importedValues.keys;
+		boolean committed = importedValues.committed;
+
+		int removedCount = 0;
+		if (removeAfter && committed && !importedKeys.isEmpty()) {
+			SharedPreferences.Editor sourceEditor = sharedPreferences.edit();
+			for (String key : importedKeys) {
+				sourceEditor.remove(key);
 			}
-			log("Import finished! (" + importCount + "/" + values.size() + " entries imported)");
+			committed = sourceEditor.commit();
+			removedCount = committed ? importedKeys.size() : 0;
+			logger.d("-> Deleted {} imported entries", removedCount);
 		}
+		return new ImportResult(values.size(), importedKeys.size(), removedCount, committed);
 	}
 
 	/**
@@ -434,8 +540,17 @@ public final class EncryptedPreferences {
 	 * @see {@linkplain SharedPreferences#getAll()}
 	 */
 	public void forceDeleteExistingPreferences() {
-		Set<String> storedKeys = sharedPreferences.getAll().keySet();
-		removeExistingPreferenceKeys(storedKeys.toArray(new String[storedKeys.size()]));
+		edit().clear().apply();
+	}
+
+	/**
+	 * Asynchronously deletes all existing preference entries stored in its underlying {@linkplain SharedPreferences} instance.
+	 * <b>Removed values cannot be restored!</b>
+	 * @return A {@linkplain Future} which completes once all entries are deleted, with true if the deletion was written to persistent storage.
+	 * @see #forceDeleteExistingPreferences()
+	 */
+	public Future<Boolean> forceDeleteExistingPreferencesAsync() {
+		return store.edit().clear().commitAsync();
 	}
 
 	/**
@@ -465,10 +580,10 @@ public final class EncryptedPreferences {
 	 */
 	public final class Utils {
 
-		private final EncryptedPreferences encryptedPreferences;
+		private final EncryptedStore store;
 
 		private Utils(EncryptedPreferences encryptedPreferences) {
-			this.encryptedPreferences = encryptedPreferences;
+			this.store = encryptedPreferences.store;
 		}
 
 		/**
@@ -477,7 +592,7 @@ public final class EncryptedPreferences {
 		 * @return The encrypted value of the given String
 		 */
 		public String encryptStringValue(String value) {
-			return encryptedPreferences.encryptString(value);
+			return store.encryptString(value);
 		}
 
 		/**
@@ -486,73 +601,121 @@ public final class EncryptedPreferences {
 		 * @return The decrypted value of the given String
 		 */
 		public String decryptStringValue(String value) {
-			return encryptedPreferences.decryptString(value);
+			return store.decryptString(value);
 		}
 
 	}
 
-
-
-	private class OnSharedPreferenceChangeListenerImpl implements SharedPreferences.OnSharedPreferenceChangeListener {
-
-		private final OnSharedPreferenceChangeListener listener;
-		private final EncryptedPreferences             encryptedPreferences;
-
-		private OnSharedPreferenceChangeListenerImpl(EncryptedPreferences encryptedPreferences, OnSharedPreferenceChangeListener listener) {
-			this.listener = listener;
-			this.encryptedPreferences = encryptedPreferences;
-		}
-
-		protected OnSharedPreferenceChangeListener getListenerInterface() {
-			return listener;
-		}
+	/**
+	 * The only listener registered with the underlying storage. Every changed key is decrypted once and then handed to all registered
+	 * {@link OnSharedPreferenceChangeListener}s, either right away or on the configured listener {@linkplain Executor}.
+	 */
+	private final class ListenerBridge implements PreferenceStorage.Listener {
 
 		@Override
-		public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-			if (checkIfListenerExist(listener)) {
-				log("onSharedPreferenceChanged() : found listener " + listener);
-				listener.onSharedPreferenceChanged(encryptedPreferences, encryptedPreferences.getUtils().decryptStringValue(key));
+		public void onStorageChanged(PreferenceStorage storage, final String key) {
+			// SharedPreferences reports changes on the main thread, but the other storages report them on the thread which wrote them
+			Executor executor = listenerExecutor != null || !PendingWrites.isAnyWriterThread() ? listenerExecutor : writerListenerExecutor();
+			if (executor == null) {
+				dispatch(key);
 			} else {
-				log("onSharedPreferenceChanged() : couldn't find listener (" + listener + ")");
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						dispatch(key);
+					}
+				});
+			}
+		}
+
+		private void dispatch(String encryptedKey) {
+			if (listeners.isEmpty()) {
+				logger.d("dispatch() : no listeners registered for {}", encryptedKey);
+				return;
+			}
+			String key = encryptedKey == null ? null : store.decryptKey(encryptedKey);
+			Metrics metrics = store.metrics();
+			// iterates over the listeners registered when the dispatch started, registrations during the dispatch don't interfere
+			for (OnSharedPreferenceChangeListener listener : listeners) {
+				long startTime = metrics.start();
+				listener.onSharedPreferenceChanged(EncryptedPreferences.this, key);
+				metrics.record(MetricsSink.Operation.LISTENER_DISPATCH, startTime);
 			}
 		}
 
 	}
 
 	/**
-	 * Class used for modifying values in a {@link EncryptedPreferences} object. All changes you make in an editor are batched, and not copied back to the
-	 * original {@link EncryptedPreferences} until you call {@link EncryptedEditor#apply()}.
+	 * The result of an import of unencrypted {@linkplain SharedPreferences}.
+	 * @see #importSharedPreferences(SharedPreferences, boolean, boolean, ImportProgressListener)
 	 */
-	public final class EncryptedEditor {
+	public static final class ImportResult {
+
+		private final int     totalCount;
+		private final int     importedCount;
+		private final int     removedCount;
+		private final boolean successful;
+
+		private ImportResult(int totalCount, int importedCount, int removedCount, boolean successful) {
+			this.totalCount = totalCount;
+			this.importedCount = importedCount;
+			this.removedCount = removedCount;
+			this.successful = successful;
+		}
 
-		private final String TAG = EncryptedEditor.class.getSimpleName();
-		private final EncryptedPreferences     encryptedPreferences;
-		private final SharedPreferences.Editor editor;
+		/**
+		 * @return The number of entries found in the unencrypted preferences.
+		 */
+		public int getTotalCount() {
+			return totalCount;
+		}
 
-		private EncryptedEditor(EncryptedPreferences encryptedPreferences) {
-			this.encryptedPreferences = encryptedPreferences;
-			this.editor = encryptedPreferences.sharedPreferences.edit();
+		/**
+		 * @return The number of entries which were encrypted and written.
+		 */
+		public int getImportedCount() {
+			return importedCount;
 		}
 
-		private synchronized void log(String logMessage) {
-			if (encryptedPreferences.printDebugMessages) {
-				Log.d(TAG, logMessage);
-			}
+		/**
+		 * @return The number of entries which were skipped, because they already existed or couldn't be encrypted.
+		 */
+		public int getSkippedCount() {
+			return totalCount - importedCount;
 		}
 
-		private SharedPreferences.Editor editor() {
-			return editor;
+		/**
+		 * @return The number of entries which were removed from the unencrypted preferences.
+		 */
+		public int getRemovedCount() {
+			return removedCount;
 		}
 
-		private String encryptValue(String value) {
-			String encryptedString = encryptedPreferences.encryptString(value);
-			log("encryptValue() => " + encryptedString);
-			return encryptedString;
+		/**
+		 * @return Whether all changes were successfully written to persistent storage or not.
+		 */
+		public boolean isSuccessful() {
+			return successful;
 		}
 
-		private void putValue(String key, String value) {
-			log("putValue() => " + key + " [" + encryptValue(key) + "] || " + value + " [" + encryptValue(value) + "]");
-			editor().putString(encryptValue(key), encryptValue(value));
+		@Override
+		public String toString() {
+			return "ImportResult{total=" + totalCount + ", imported=" + importedCount + ", removed=" + removedCount + ", successful=" + successful + "}";
+		}
+	}
+
+	/**
+	 * Class used for modifying values in a {@link EncryptedPreferences} object. All changes you make in an editor are batched, and not copied back to the
+	 * original {@link EncryptedPreferences} until you call {@link EncryptedEditor#apply()}.
+	 * Changes are kept in plain text until they're applied or committed, so every key is encrypted only once per batch, no matter how often it was
+	 * modified.
+	 */
+	public final class EncryptedEditor {
+
+		private final EncryptedStore.Editor editor;
+
+		private EncryptedEditor(EncryptedStore.Editor editor) {
+			this.editor = editor;
 		}
 
 		/**
@@ -562,7 +725,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor putString(String key, String value) {
-			putValue(key, value);
+			editor.putString(key, value);
 			return this;
 		}
 
@@ -573,7 +736,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor putInt(String key, int value) {
-			putValue(key, String.valueOf(value));
+			editor.putInt(key, value);
 			return this;
 		}
 
@@ -584,7 +747,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor putLong(String key, long value) {
-			putValue(key, String.valueOf(value));
+			editor.putLong(key, value);
 			return this;
 		}
 
@@ -595,7 +758,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor putFloat(String key, float value) {
-			putValue(key, String.valueOf(value));
+			editor.putFloat(key, value);
 			return this;
 		}
 
@@ -606,7 +769,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor putBoolean(String key, boolean value) {
-			putValue(key, String.valueOf(value));
+			editor.putBoolean(key, value);
 			return this;
 		}
 
@@ -616,11 +779,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor remove(String key) {
-			String encKey = encryptValue(key);
-			if (containsEncryptedKey(encKey)) {
-				log("remove() => " + key + " [ " + encKey + " ]");
-				editor().remove(encKey);
-			}
+			editor.remove(key);
 			return this;
 		}
 
@@ -630,8 +789,7 @@ public final class EncryptedPreferences {
 		 * @return Returns a reference to the same Editor object, so you can chain put calls together.
 		 */
 		public EncryptedEditor clear() {
-			log("clear() => clearing preferences.");
-			editor().clear();
+			editor.clear();
 			return this;
 		}
 
@@ -639,9 +797,13 @@ public final class EncryptedPreferences {
 		 * Commit your preferences changes back from this Editor to the {@link EncryptedPreferences} object it is editing. This atomically performs the
 		 * requested
 		 * modifications, replacing whatever is currently in the {@link EncryptedPreferences}.
+		 * The changes are visible to readers immediately, while the encryption and the disk write happen asynchronously on a background thread.
+		 * <p>Unlike {@linkplain SharedPreferences.Editor#apply()}, the changes only exist in memory until they are encrypted, so Android doesn't
+		 * wait for them while it flushes pending preference writes in {@code onPause()} or {@code onStop()}, and they're lost if the process is
+		 * killed first. Use {@link #commit()} for changes which must not get lost.
 		 */
 		public void apply() {
-			editor().apply();
+			editor.apply();
 		}
 
 		/**
@@ -661,7 +823,7 @@ public final class EncryptedPreferences {
 		 * to persistent storage.
 		 */
 		public boolean commit() {
-			return editor().commit();
+			return editor.commit();
 		}
 
 	}
@@ -671,11 +833,16 @@ public final class EncryptedPreferences {
 	 */
 	public static final class Builder {
 
-		private final Context context;
-		private       String  encryptionPassword;
-		private       String  prefsName;
+		private final Context                context;
+		private final EncryptedStore.Builder storeBuilder;
+		private       String                 prefsName;
 		private boolean singleton = false;
+		private int      shardCount = 1;
+		private Executor warmupExecutor;
+		private boolean  preloadValues;
+		private Executor listenerExecutor;
 		private final List<OnSharedPreferenceChangeListener> listeners;
+		private final List<OnReadyListener>                  readyListeners;
 
 		/**
 		 * The Builder's constructor
@@ -683,7 +850,9 @@ public final class EncryptedPreferences {
 		 */
 		public Builder(Context context) {
 			this.context = context.getApplicationContext();
+			this.storeBuilder = new EncryptedStore.Builder();
 			this.listeners = new ArrayList<>();
+			this.readyListeners = new ArrayList<>();
 		}
 
 		/**
@@ -692,7 +861,7 @@ public final class EncryptedPreferences {
 		 * @return
 		 */
 		public Builder withEncryptionPassword(String encryptionPassword) {
-			this.encryptionPassword = encryptionPassword;
+			storeBuilder.withEncryptionPassword(encryptionPassword);
 			return this;
 		}
 
@@ -706,6 +875,34 @@ public final class EncryptedPreferences {
 			return this;
 		}
 
+		/**
+		 * Specify the {@link PreferenceStorage} which should be used to read and write values, instead of the default {@linkplain SharedPreferences}.
+		 * When a storage is specified, the preference name configured with {@link #withPreferenceName(String)} is ignored.
+		 * @param storage - The {@link PreferenceStorage} to use, or null to use {@linkplain SharedPreferences} (default)
+		 * @return
+		 * @see InMemoryStorage
+		 * @see SharedPreferencesStorage
+		 */
+		public Builder withStorage(PreferenceStorage storage) {
+			storeBuilder.withStorage(storage);
+			return this;
+		}
+
+		/**
+		 * Spread the stored values over several {@linkplain SharedPreferences} files, chosen by the hash of their encrypted key. SharedPreferences
+		 * rewrites its whole file on every write, so with N shards a write only rewrites about 1/N of all values.
+		 * The shards are named after the preference name with a {@code _shard0}, {@code _shard1}, ... suffix. <b>Values written without shards
+		 * or with another number of shards can't be read</b>, move them with {@link StorageConverter} first.
+		 * This option is ignored if a storage is specified with {@link #withStorage(PreferenceStorage)}, use {@link ShardedStorage} directly instead.
+		 * @param shardCount - The number of shards, 1 or less disables sharding (default)
+		 * @return
+		 * @see ShardedStorage
+		 */
+		public Builder withShards(int shardCount) {
+			this.shardCount = shardCount;
+			return this;
+		}
+
 		/**
 		 * Specify the {@link EncryptedPreferences} instance to be configured as Singleton.
 		 * This allows you to retrieve this configured
@@ -719,6 +916,82 @@ public final class EncryptedPreferences {
 			return this;
 		}
 
+		/**
+		 * Enables an in-memory cache for decrypted values, so repeated reads of the same key don't have to decrypt the stored value again.
+		 * Cached values are invalidated whenever they are changed through an {@link EncryptedEditor} or the underlying {@linkplain SharedPreferences}.
+		 * Keep in mind that cached values are held as plain text in memory.
+		 * @param maxEntries - The maximum number of decrypted values to keep, a value of 0 or less disables the cache (default)
+		 * @return
+		 */
+		public Builder withValueCache(int maxEntries) {
+			storeBuilder.withValueCache(maxEntries);
+			return this;
+		}
+
+		/**
+		 * Store keys and values as URL-safe Base64 ({@code -} and {@code _} instead of {@code +} and {@code /}, without padding).
+		 * URL-safe Base64 only consists of characters which are valid in preference files, so no additional escaping pass is required.
+		 * <b>This option is meant for new preferences only</b>, values written without it can't be read while it's enabled and vice versa.
+		 * @param urlSafeEncoding - Whether to use URL-safe Base64 or not (default)
+		 * @return
+		 */
+		public Builder withUrlSafeEncoding(boolean urlSafeEncoding) {
+			storeBuilder.withUrlSafeEncoding(urlSafeEncoding);
+			return this;
+		}
+
+		/**
+		 * Write values in the compact binary format, which stores the value's type together with its fixed-width binary representation instead of its
+		 * String representation. This saves the String conversion and parsing for primitive values.
+		 * Values written in the text format (default) can still be read while this option is enabled, but values written in the binary format can't
+		 * be read by previous versions of this library or {@link Utils#decryptStringValue(String)}.
+		 * @param binaryValues - Whether to write values in the binary format or not (default)
+		 * @return
+		 */
+		public Builder withBinaryValues(boolean binaryValues) {
+			storeBuilder.withBinaryValues(binaryValues);
+			return this;
+		}
+
+		/**
+		 * Store keys as their keyed hash (truncated HMAC-SHA256, derived from the encryption password) instead of their cipher text.
+		 * Looking up a key then costs a single hash computation instead of an AES encryption, and stored keys have a fixed length of 22 characters.
+		 * As a hash can't be decrypted, the plain key is stored encrypted together with its value and restored from there by
+		 * {@link EncryptedPreferences#getAllKeys(boolean)} and {@link EncryptedPreferences#getAll()}.
+		 * <b>This option is meant for new preferences only</b>, values written without it can't be read while it's enabled and vice versa.
+		 * @param hashedKeys - Whether to store hashed keys or encrypted keys (default)
+		 * @return
+		 */
+		public Builder withHashedKeys(boolean hashedKeys) {
+			storeBuilder.withHashedKeys(hashedKeys);
+			return this;
+		}
+
+		/**
+		 * Specify the {@link CipherSuite} new values are encrypted with. The authenticated suites detect modified values and use a random nonce, so
+		 * the same value is encrypted differently every time. Keys are encrypted with {@link CipherSuite#AES_CBC} regardless of this setting.
+		 * Values written with any suite can still be read, but values written with an authenticated suite can't be read by previous versions of this
+		 * library or AESCrypt. Falls back to {@link CipherSuite#AES_CBC} if the given suite isn't supported on the device.
+		 * @param cipherSuite - The {@link CipherSuite} to encrypt values with, {@link CipherSuite#AES_CBC} by default
+		 * @return
+		 * @see CipherSuite#isSupported()
+		 */
+		public Builder withCipherSuite(CipherSuite cipherSuite) {
+			storeBuilder.withCipherSuite(cipherSuite);
+			return this;
+		}
+
+		/**
+		 * Report the duration of reads, writes, encryptions, decryptions and listener calls to the given {@link MetricsSink}. Without a sink
+		 * (default), operations aren't timed at all.
+		 * @param metricsSink - The {@link MetricsSink} to report to, e.g. a {@link MetricsRecorder}, or null to disable metrics
+		 * @return
+		 */
+		public Builder withMetrics(MetricsSink metricsSink) {
+			storeBuilder.withMetrics(metricsSink);
+			return this;
+		}
+
 		/**
 		 * Specify an {@link OnSharedPreferenceChangeListener} which will be registered immediately once the EncryptedPreference instance is initialized.
 		 * This method can be called multiple times to register multiple {@link OnSharedPreferenceChangeListener}.
@@ -732,6 +1005,60 @@ public final class EncryptedPreferences {
 			return this;
 		}
 
+		/**
+		 * Notify the registered {@link OnSharedPreferenceChangeListener}s on the given {@linkplain Executor} instead of the thread which reported
+		 * the change (the main thread for {@linkplain SharedPreferences}, a shared listener thread for other storages). The changed key is
+		 * decrypted on the executor as well, once per change for all listeners. Use a single threaded executor to receive the changes in the order
+		 * they were written.
+		 * @param executor - The {@linkplain Executor} to notify listeners on, or null to use the default threads described above (default)
+		 * @return
+		 */
+		public Builder withListenerExecutor(Executor executor) {
+			this.listenerExecutor = executor;
+			return this;
+		}
+
+		/**
+		 * Warm up the {@link EncryptedPreferences} instance in the background once it's built. The warm-up loads the underlying preferences from
+		 * disk and the cipher provider classes, so the first read doesn't have to wait for them. Every thread still initializes its own ciphers
+		 * on its first read, which is cheap once the provider classes are loaded.
+		 * Use {@link EncryptedPreferences#awaitReady()} or {@link #withOnReadyListener(OnReadyListener)} to find out when it finished.
+		 * @param executor - The {@linkplain Executor} to run the warm-up on
+		 * @return
+		 * @see #withWarmup(Executor, boolean)
+		 */
+		public Builder withWarmup(Executor executor) {
+			return withWarmup(executor, false);
+		}
+
+		/**
+		 * Warm up the {@link EncryptedPreferences} instance in the background once it's built.
+		 * When values are preloaded, all stored values are decrypted into the value cache as well (see {@link #withValueCache(int)}). Without a
+		 * value cache, only the decrypted keys are remembered.
+		 * @param executor - The {@linkplain Executor} to run the warm-up on
+		 * @param preloadValues - Whether to decrypt all stored values during the warm-up or not
+		 * @return
+		 * @see #withWarmup(Executor)
+		 */
+		public Builder withWarmup(Executor executor, boolean preloadValues) {
+			this.warmupExecutor = executor;
+			this.preloadValues = preloadValues;
+			return this;
+		}
+
+		/**
+		 * Specify an {@link OnReadyListener} which is notified once the configured warm-up finished.
+		 * This method can be called multiple times to register multiple {@link OnReadyListener}.
+		 * @param listener - The {@link OnReadyListener} which should be notified
+		 * @return
+		 */
+		public Builder withOnReadyListener(OnReadyListener listener) {
+			if (listener != null) {
+				this.readyListeners.add(listener);
+			}
+			return this;
+		}
+
 		/**
 		 * Build a new {@link EncryptedPreferences} instance with the specified configuration.
 		 * @return A new {@link EncryptedPreferences} instance with the specified configuration
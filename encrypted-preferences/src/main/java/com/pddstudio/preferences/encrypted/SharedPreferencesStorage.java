@@ -0,0 +1,125 @@
+package com.pddstudio.preferences.encrypted;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The default {@link PreferenceStorage}, which stores all values in {@linkplain SharedPreferences}.
+ * Two instances wrapping the same {@linkplain SharedPreferences} are equal, as they're backed by the same values.
+ */
+public final class SharedPreferencesStorage implements PreferenceStorage {
+
+	private final SharedPreferences                                               sharedPreferences;
+	// SharedPreferences only keeps weak references to its listeners, so keep strong ones here
+	private final Map<Listener, SharedPreferences.OnSharedPreferenceChangeListener> listeners;
+
+	/**
+	 * Create a new {@link PreferenceStorage} for the given {@linkplain SharedPreferences}.
+	 * @param sharedPreferences - The {@linkplain SharedPreferences} to store values in
+	 */
+	public SharedPreferencesStorage(SharedPreferences sharedPreferences) {
+		if (sharedPreferences == null) {
+			throw new RuntimeException("Unable to initialize SharedPreferencesStorage! SharedPreferences must not be null.");
+		}
+		this.sharedPreferences = sharedPreferences;
+		this.listeners = new HashMap<>();
+	}
+
+	@Override
+	public String get(String key) {
+		return sharedPreferences.getString(key, null);
+	}
+
+	@Override
+	public boolean contains(String key) {
+		return sharedPreferences.contains(key);
+	}
+
+	@Override
+	public Map<String, ?> getAll() {
+		return sharedPreferences.getAll();
+	}
+
+	@Override
+	public PreferenceStorage.Editor edit() {
+		return new Editor(sharedPreferences.edit());
+	}
+
+	@Override
+	public void registerListener(final Listener listener) {
+		SharedPreferences.OnSharedPreferenceChangeListener changeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+			@Override
+			public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+				listener.onStorageChanged(SharedPreferencesStorage.this, key);
+			}
+		};
+		synchronized (listeners) {
+			if (listeners.containsKey(listener)) {
+				return;
+			}
+			listeners.put(listener, changeListener);
+		}
+		sharedPreferences.registerOnSharedPreferenceChangeListener(changeListener);
+	}
+
+	@Override
+	public void unregisterListener(Listener listener) {
+		SharedPreferences.OnSharedPreferenceChangeListener changeListener;
+		synchronized (listeners) {
+			changeListener = listeners.remove(listener);
+		}
+		if (changeListener != null) {
+			sharedPreferences.unregisterOnSharedPreferenceChangeListener(changeListener);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof SharedPreferencesStorage && ((SharedPreferencesStorage) o).sharedPreferences == sharedPreferences;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(sharedPreferences);
+	}
+
+	private static final class Editor implements PreferenceStorage.Editor {
+
+		private final SharedPreferences.Editor editor;
+
+		private Editor(SharedPreferences.Editor editor) {
+			this.editor = editor;
+		}
+
+		@Override
+		public PreferenceStorage.Editor put(String key, String value) {
+			editor.putString(key, value);
+			return this;
+		}
+
+		@Override
+		public PreferenceStorage.Editor remove(String key) {
+			editor.remove(key);
+			return this;
+		}
+
+		@Override
+		public PreferenceStorage.Editor clear() {
+			editor.clear();
+			return this;
+		}
+
+		@Override
+		public boolean commit() {
+			return editor.commit();
+		}
+
+		@Override
+		public void apply() {
+			editor.apply();
+		}
+	}
+
+}